@@ -0,0 +1,106 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 固定并发的闭环压测：concurrency 个虚拟线程各自循环请求同一地址，预热后统计吞吐与延迟分位数。
+ * JDK 21 直接运行，无需编译与依赖：
+ * <pre>
+ * java bench/PublicGroupBench.java http://127.0.0.1:18092/api/public/group/bench 256 30 10
+ * </pre>
+ * 参数依次为：地址、并发数（默认 256）、统计时长秒（默认 30）、预热秒（默认 10）。
+ */
+public class PublicGroupBench {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("用法: java PublicGroupBench.java <url> [concurrency] [seconds] [warmupSeconds]");
+            System.exit(1);
+        }
+        URI uri = URI.create(args[0]);
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int warmup = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("User-Agent", "Mozilla/5.0 (iPhone; CPU iPhone OS 17_0 like Mac OS X) bench")
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+
+        long warmupEnd = System.nanoTime() + warmup * 1_000_000_000L;
+        long end = warmupEnd + seconds * 1_000_000_000L;
+        AtomicLong errors = new AtomicLong();
+        List<long[]> results = new ArrayList<>();
+        int[] counts = new int[concurrency];
+
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int w = 0; w < concurrency; w++) {
+                long[] latencies = new long[1 << 16];
+                results.add(latencies);
+                int index = w;
+                workers.submit(() -> {
+                    long[] buf = latencies;
+                    int n = 0;
+                    while (true) {
+                        long start = System.nanoTime();
+                        if (start >= end) break;
+                        boolean ok;
+                        try {
+                            HttpResponse<byte[]> resp = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                            ok = resp.statusCode() == 200;
+                        } catch (Exception e) {
+                            ok = false;
+                        }
+                        long finish = System.nanoTime();
+                        if (start < warmupEnd || finish > end) continue;
+                        if (!ok) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        if (n == buf.length) {
+                            buf = Arrays.copyOf(buf, n * 2);
+                            results.set(index, buf);
+                        }
+                        buf[n++] = finish - start;
+                    }
+                    counts[index] = n;
+                    return null;
+                });
+            }
+        }
+
+        int total = 0;
+        for (int c : counts) total += c;
+        long[] all = new long[total];
+        int pos = 0;
+        for (int w = 0; w < concurrency; w++) {
+            System.arraycopy(results.get(w), 0, all, pos, counts[w]);
+            pos += counts[w];
+        }
+        Arrays.sort(all);
+        System.out.printf("requests=%d errors=%d rps=%.1f p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms%n",
+                total, errors.get(), total / (double) seconds,
+                millis(all, 0.50), millis(all, 0.90), millis(all, 0.99),
+                all.length > 0 ? all[all.length - 1] / 1e6 : 0.0);
+    }
+
+    private static double millis(long[] sorted, double q) {
+        if (sorted.length == 0) return 0;
+        int i = (int) Math.min(sorted.length - 1, Math.ceil(q * sorted.length) - 1);
+        return sorted[Math.max(0, i)] / 1e6;
+    }
+}
@@ -0,0 +1,68 @@
+#!/usr/bin/env bash
+# 对比平台线程与虚拟线程模式下 /api/public/group/{name} 的吞吐与 p99。
+# 每种模式使用全新的临时数据目录与同一张群码图片，依次启动应用、预热、压测、停止。
+# 用法：bench/compare-threads.sh            （在 wxhm-java 目录下执行）
+# 可调：CONCURRENCY / DURATION / WARMUP / PORT / JAR / JAVA_BIN / JAVA_OPTS
+# 未打包时可设 APP_CP 为类路径（如 target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)）
+set -euo pipefail
+
+APP_NAME="wxHm-bench"
+BASE_DIR="$(cd "$(dirname "$0")/.." && pwd -P)"
+JAVA_BIN="${JAVA_BIN:-java}"
+JAVA_OPTS="${JAVA_OPTS:--Xms512m -Xmx512m -XX:+UseG1GC}"
+PORT="${PORT:-18192}"
+CONCURRENCY="${CONCURRENCY:-256}"
+DURATION="${DURATION:-30}"
+WARMUP="${WARMUP:-10}"
+JAR="${JAR:-${BASE_DIR}/target/wxhm-1.0.0.jar}"
+QR_IMAGE="${QR_IMAGE:-${BASE_DIR}/../zsm.jpg}"
+GROUP="bench"
+
+if [[ -n "${APP_CP:-}" ]]; then
+  LAUNCH=(-cp "$APP_CP" com.wxhm.WxHmApplication)
+else
+  LAUNCH=(-jar "$JAR")
+fi
+
+if [[ -z "${APP_CP:-}" && ! -f "$JAR" ]]; then
+  echo "[$APP_NAME] 未找到 $JAR，开始打包..."
+  (cd "$BASE_DIR" && mvn -q -B package -DskipTests)
+fi
+
+run_mode() {
+  local mode="$1" virtual="$2"
+  local work
+  work="$(mktemp -d)"
+  mkdir -p "$work/uploads/$GROUP"
+  cp "$QR_IMAGE" "$work/uploads/$GROUP/qr_$(date +%s)000.jpg"
+
+  (cd "$work" && nohup "$JAVA_BIN" $JAVA_OPTS "${LAUNCH[@]}" \
+      --server.port="$PORT" \
+      --spring.threads.virtual.enabled="$virtual" \
+      --wxhm.upload-base="$work/uploads" \
+      --wxhm.files-dir="$work/uploads/files" \
+      --wxhm.archive.enabled=false \
+      >"$work/app.log" 2>&1 & echo $! >"$work/app.pid")
+
+  for _ in $(seq 1 60); do
+    curl -sf "http://127.0.0.1:${PORT}/api/public/home" >/dev/null 2>&1 && break
+    sleep 1
+  done
+
+  printf '%-9s ' "$mode"
+  "$JAVA_BIN" "$BASE_DIR/bench/PublicGroupBench.java" \
+      "http://127.0.0.1:${PORT}/api/public/group/${GROUP}" "$CONCURRENCY" "$DURATION" "$WARMUP"
+
+  local pid
+  pid="$(<"$work/app.pid")"
+  kill "$pid" 2>/dev/null || true
+  for _ in $(seq 1 20); do
+    kill -0 "$pid" 2>/dev/null || break
+    sleep 1
+  done
+  rm -rf "$work"
+}
+
+echo "[$APP_NAME] 并发=${CONCURRENCY} 时长=${DURATION}s 预热=${WARMUP}s CPU=$(nproc 2>/dev/null || echo ?)"
+run_mode platform false
+run_mode virtual true
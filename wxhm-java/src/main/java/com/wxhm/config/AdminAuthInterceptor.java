@@ -12,6 +12,7 @@ import java.nio.charset.StandardCharsets;
 
 /**
  * 管理后台会话校验：HTML 路径跳转登录；/api/admin 与 stats/data 未授权返回 JSON。
+ * 令牌接口校验 X-Admin-Token；实时统计 SSE 由浏览器 EventSource 发起、无法设置请求头，允许用 ?token= 传递。
  */
 @Component
 public class AdminAuthInterceptor implements HandlerInterceptor {
@@ -19,8 +20,14 @@ public class AdminAuthInterceptor implements HandlerInterceptor {
     public static final String SESSION_ADMIN = "WXHM_ADMIN";
     public static final String SESSION_ADMIN_TOKEN = "WXHM_ADMIN_TOKEN";
 
-    private static String extractToken(HttpServletRequest request) {
-        return request.getHeader("X-Admin-Token");
+    static final String STATS_STREAM_PATH = "/api/admin/stats/stream";
+
+    private static String extractToken(HttpServletRequest request, String path) {
+        String token = request.getHeader("X-Admin-Token");
+        if ((token == null || token.isBlank()) && STATS_STREAM_PATH.equals(path)) {
+            token = request.getParameter("token");
+        }
+        return token;
     }
 
     static String normalizePath(HttpServletRequest request) {
@@ -84,12 +91,13 @@ public class AdminAuthInterceptor implements HandlerInterceptor {
             return true;
         }
 
-        boolean tokenApi = "/admin/stats/data".equals(path) || "/api/admin/stats/data".equals(path);
+        boolean tokenApi = "/admin/stats/data".equals(path) || "/api/admin/stats/data".equals(path)
+                || STATS_STREAM_PATH.equals(path);
 
         HttpSession session = request.getSession(false);
         boolean logged = session != null && Boolean.TRUE.equals(session.getAttribute(SESSION_ADMIN));
         String sessionToken = session != null ? (String) session.getAttribute(SESSION_ADMIN_TOKEN) : null;
-        String reqToken = extractToken(request);
+        String reqToken = extractToken(request, path);
 
         if (tokenApi) {
             if (logged && sessionToken != null && !sessionToken.isBlank() && sessionToken.equals(reqToken)) {
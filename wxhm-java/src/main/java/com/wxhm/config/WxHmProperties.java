@@ -5,6 +5,8 @@ import org.springframework.stereotype.Component;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * wxHm 应用配置
@@ -19,6 +21,15 @@ public class WxHmProperties {
     private String adminPassword = "admin321";
     private int expireDays = 7;
     private String githubUrl = "https://github.com/cooker/wxHm";
+    private Ingest ingest = new Ingest();
+    private Retention retention = new Retention();
+    private MissingGroup missingGroup = new MissingGroup();
+    private Archive archive = new Archive();
+    private Live live = new Live();
+    private Watch watch = new Watch();
+    private Expiry expiry = new Expiry();
+    private Image image = new Image();
+    private Serve serve = new Serve();
 
     /** 解析为绝对路径，相对路径基于进程工作目录（user.dir） */
     private static Path toAbsolutePath(String dir) {
@@ -37,6 +48,10 @@ public class WxHmProperties {
         return toAbsolutePath(filesDir);
     }
 
+    public Path getArchiveDirPath() {
+        return toAbsolutePath(archive.getDir());
+    }
+
     public Path getGroupPath(String groupName) {
         return getUploadBasePath().resolve(groupName);
     }
@@ -80,4 +95,627 @@ public class WxHmProperties {
     public void setGithubUrl(String githubUrl) {
         this.githubUrl = githubUrl;
     }
+
+    public Ingest getIngest() {
+        return ingest;
+    }
+
+    public void setIngest(Ingest ingest) {
+        this.ingest = ingest;
+    }
+
+    public Retention getRetention() {
+        return retention;
+    }
+
+    public void setRetention(Retention retention) {
+        this.retention = retention;
+    }
+
+    public MissingGroup getMissingGroup() {
+        return missingGroup;
+    }
+
+    public void setMissingGroup(MissingGroup missingGroup) {
+        this.missingGroup = missingGroup;
+    }
+
+    public Archive getArchive() {
+        return archive;
+    }
+
+    public void setArchive(Archive archive) {
+        this.archive = archive;
+    }
+
+    public Live getLive() {
+        return live;
+    }
+
+    public void setLive(Live live) {
+        this.live = live;
+    }
+
+    public Watch getWatch() {
+        return watch;
+    }
+
+    public void setWatch(Watch watch) {
+        this.watch = watch;
+    }
+
+    public Expiry getExpiry() {
+        return expiry;
+    }
+
+    public void setExpiry(Expiry expiry) {
+        this.expiry = expiry;
+    }
+
+    public Image getImage() {
+        return image;
+    }
+
+    public void setImage(Image image) {
+        this.image = image;
+    }
+
+    public Serve getServe() {
+        return serve;
+    }
+
+    public void setServe(Serve serve) {
+        this.serve = serve;
+    }
+
+    /** 访问日志异步写入配置（wxhm.ingest.*） */
+    public static class Ingest {
+        /** 队列容量，写线程跟不上时超出部分丢弃 */
+        private int capacity = 20000;
+        /** 单批最多写入条数 */
+        private int batchSize = 500;
+        /** 最长刷盘间隔（毫秒） */
+        private long flushIntervalMs = 500;
+        /** 写线程跟不上时的过载策略 */
+        private OverloadPolicy overloadPolicy = OverloadPolicy.SAMPLE;
+        /** block 策略下等待队列空位的最长时间（毫秒），超时后丢弃 */
+        private long blockTimeoutMs = 20;
+        /** sample 策略：队列占用超过该比例时采样率翻倍 */
+        private double sampleHighWatermark = 0.5;
+        /** sample 策略：队列占用低于该比例时采样率减半 */
+        private double sampleLowWatermark = 0.1;
+        /** sample 策略：最大采样间隔 N（1/N 采样） */
+        private int maxSampleRate = 64;
+        /** 重复访问判重窗口（分钟），窗口内同一 (群, 日期, IP, 平台) 只落一行、其余只计重复次数；<=0 关闭 */
+        private int dedupWindowMinutes = 0;
+        /** 判重 Bloom 过滤器的时间分片数 */
+        private int dedupSlices = 4;
+        /** 单个分片预计的不同访问键数量 */
+        private int dedupExpectedPerSlice = 100000;
+        /** 单个分片期望误判率（误判时一次新访问只计为重复） */
+        private double dedupFpp = 0.001;
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+
+        public OverloadPolicy getOverloadPolicy() {
+            return overloadPolicy;
+        }
+
+        public void setOverloadPolicy(OverloadPolicy overloadPolicy) {
+            this.overloadPolicy = overloadPolicy;
+        }
+
+        public long getBlockTimeoutMs() {
+            return blockTimeoutMs;
+        }
+
+        public void setBlockTimeoutMs(long blockTimeoutMs) {
+            this.blockTimeoutMs = blockTimeoutMs;
+        }
+
+        public double getSampleHighWatermark() {
+            return sampleHighWatermark;
+        }
+
+        public void setSampleHighWatermark(double sampleHighWatermark) {
+            this.sampleHighWatermark = sampleHighWatermark;
+        }
+
+        public double getSampleLowWatermark() {
+            return sampleLowWatermark;
+        }
+
+        public void setSampleLowWatermark(double sampleLowWatermark) {
+            this.sampleLowWatermark = sampleLowWatermark;
+        }
+
+        public int getMaxSampleRate() {
+            return maxSampleRate;
+        }
+
+        public void setMaxSampleRate(int maxSampleRate) {
+            this.maxSampleRate = maxSampleRate;
+        }
+
+        public int getDedupWindowMinutes() {
+            return dedupWindowMinutes;
+        }
+
+        public void setDedupWindowMinutes(int dedupWindowMinutes) {
+            this.dedupWindowMinutes = dedupWindowMinutes;
+        }
+
+        public int getDedupSlices() {
+            return dedupSlices;
+        }
+
+        public void setDedupSlices(int dedupSlices) {
+            this.dedupSlices = dedupSlices;
+        }
+
+        public int getDedupExpectedPerSlice() {
+            return dedupExpectedPerSlice;
+        }
+
+        public void setDedupExpectedPerSlice(int dedupExpectedPerSlice) {
+            this.dedupExpectedPerSlice = dedupExpectedPerSlice;
+        }
+
+        public double getDedupFpp() {
+            return dedupFpp;
+        }
+
+        public void setDedupFpp(double dedupFpp) {
+            this.dedupFpp = dedupFpp;
+        }
+    }
+
+    /** 访问日志写入过载策略 */
+    public enum OverloadPolicy {
+        /** 队列满时丢弃新记录 */
+        DROP_NEWEST,
+        /** 队列满时最多等待 block-timeout-ms，仍无空位则丢弃 */
+        BLOCK,
+        /** 队列满时丢弃最早入队的记录，保留新记录 */
+        DROP_OLDEST,
+        /** 按队列水位自适应 1/N 采样，保留的记录以权重 N 落库；队列仍满时丢弃新记录 */
+        SAMPLE
+    }
+
+    /** 群码到期处理方式 */
+    public enum ExpiryAction {
+        /** 删除图片 */
+        DELETE,
+        /** 移入群目录下的 expired/ 子目录保留 */
+        ARCHIVE
+    }
+
+    /** 数据保留与定时清理配置（wxhm.retention.*），天数 <= 0 表示永久保留 */
+    public static class Retention {
+        /** 清理任务 cron */
+        private String cron = "0 7 * * * *";
+        /** 单次 DELETE 覆盖的 rowid 区间大小 */
+        private int chunkSize = 2000;
+        /** 两个分片之间的停顿（毫秒），让出 SQLite 写锁 */
+        private long pauseMs = 10;
+        private int visitLogDays = 7;
+        private int surveyClickLogDays = 7;
+        private int missingGroupDays = 3;
+        private int loginAttemptDays = 7;
+        /** 日汇总为长期趋势数据，默认永久保留 */
+        private int rollupDays = 0;
+
+        public String getCron() {
+            return cron;
+        }
+
+        public void setCron(String cron) {
+            this.cron = cron;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public long getPauseMs() {
+            return pauseMs;
+        }
+
+        public void setPauseMs(long pauseMs) {
+            this.pauseMs = pauseMs;
+        }
+
+        public int getVisitLogDays() {
+            return visitLogDays;
+        }
+
+        public void setVisitLogDays(int visitLogDays) {
+            this.visitLogDays = visitLogDays;
+        }
+
+        public int getSurveyClickLogDays() {
+            return surveyClickLogDays;
+        }
+
+        public void setSurveyClickLogDays(int surveyClickLogDays) {
+            this.surveyClickLogDays = surveyClickLogDays;
+        }
+
+        public int getMissingGroupDays() {
+            return missingGroupDays;
+        }
+
+        public void setMissingGroupDays(int missingGroupDays) {
+            this.missingGroupDays = missingGroupDays;
+        }
+
+        public int getLoginAttemptDays() {
+            return loginAttemptDays;
+        }
+
+        public void setLoginAttemptDays(int loginAttemptDays) {
+            this.loginAttemptDays = loginAttemptDays;
+        }
+
+        public int getRollupDays() {
+            return rollupDays;
+        }
+
+        public void setRollupDays(int rollupDays) {
+            this.rollupDays = rollupDays;
+        }
+    }
+
+    /** 未创建群码访问追踪配置（wxhm.missing-group.*），内存占用只取决于这些上限 */
+    public static class MissingGroup {
+        /** 最近访问环形缓冲条数 */
+        private int recentSize = 200;
+        /** 热点群名 Top-K 跟踪数 */
+        private int topK = 100;
+        /** Top-K 保证计数达到该值的群名才单独落库，其余计入 (other) */
+        private int minHits = 2;
+        /** 两次落库之间最多缓存的 (群名, 小时) 条数 */
+        private int maxPendingKeys = 1000;
+        /** 小时汇总落库间隔（毫秒） */
+        private long flushIntervalMs = 60000;
+
+        public int getRecentSize() {
+            return recentSize;
+        }
+
+        public void setRecentSize(int recentSize) {
+            this.recentSize = recentSize;
+        }
+
+        public int getTopK() {
+            return topK;
+        }
+
+        public void setTopK(int topK) {
+            this.topK = topK;
+        }
+
+        public int getMinHits() {
+            return minHits;
+        }
+
+        public void setMinHits(int minHits) {
+            this.minHits = minHits;
+        }
+
+        public int getMaxPendingKeys() {
+            return maxPendingKeys;
+        }
+
+        public void setMaxPendingKeys(int maxPendingKeys) {
+            this.maxPendingKeys = maxPendingKeys;
+        }
+
+        public long getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+    }
+
+    /** 访问记录按日列式归档（wxhm.archive.*） */
+    public static class Archive {
+        private boolean enabled = true;
+        /** 归档目录，相对路径基于进程工作目录 */
+        private String dir = "archive";
+        /** 归档任务 cron（清理任务执行前也会先补齐归档） */
+        private String cron = "0 30 0 * * *";
+        /** 长区间查询并行扫描文件的线程数，<= 0 为 CPU 核数 */
+        private int parallelism = 0;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDir() {
+            return dir;
+        }
+
+        public void setDir(String dir) {
+            this.dir = dir;
+        }
+
+        public String getCron() {
+            return cron;
+        }
+
+        public void setCron(String cron) {
+            this.cron = cron;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+    }
+
+    /** 管理后台实时统计推送（wxhm.live.*） */
+    public static class Live {
+        /** 推送间隔（毫秒） */
+        private long intervalMs = 1000;
+        /** 无变化时的心跳间隔（毫秒），用于及时发现已断开的连接 */
+        private long heartbeatMs = 15000;
+        /** 单个连接最长保持时间（毫秒），到期后浏览器 EventSource 自动重连 */
+        private long connectionTimeoutMs = 1800000;
+        /** 同时保持的最大连接数 */
+        private int maxConnections = 200;
+
+        public long getIntervalMs() {
+            return intervalMs;
+        }
+
+        public void setIntervalMs(long intervalMs) {
+            this.intervalMs = intervalMs;
+        }
+
+        public long getHeartbeatMs() {
+            return heartbeatMs;
+        }
+
+        public void setHeartbeatMs(long heartbeatMs) {
+            this.heartbeatMs = heartbeatMs;
+        }
+
+        public long getConnectionTimeoutMs() {
+            return connectionTimeoutMs;
+        }
+
+        public void setConnectionTimeoutMs(long connectionTimeoutMs) {
+            this.connectionTimeoutMs = connectionTimeoutMs;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+    }
+
+    /** 上传目录监听（wxhm.watch.*），同步手工增删的群目录与群码图片 */
+    public static class Watch {
+        /** 是否启用 WatchService 监听；关闭后仅靠定时全量对账 */
+        private boolean enabled = true;
+        /** 事件静默多久（毫秒）后合并处理 */
+        private long debounceMs = 500;
+        /** 持续有事件时最长延迟（毫秒），超过后立即处理 */
+        private long maxDelayMs = 5000;
+        /** 定时全量对账间隔（毫秒），兜底事件溢出或监听失效 */
+        private long reconcileIntervalMs = 300000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getDebounceMs() {
+            return debounceMs;
+        }
+
+        public void setDebounceMs(long debounceMs) {
+            this.debounceMs = debounceMs;
+        }
+
+        public long getMaxDelayMs() {
+            return maxDelayMs;
+        }
+
+        public void setMaxDelayMs(long maxDelayMs) {
+            this.maxDelayMs = maxDelayMs;
+        }
+
+        public long getReconcileIntervalMs() {
+            return reconcileIntervalMs;
+        }
+
+        public void setReconcileIntervalMs(long reconcileIntervalMs) {
+            this.reconcileIntervalMs = reconcileIntervalMs;
+        }
+    }
+
+    /** 群码到期调度（wxhm.expiry.*），有效期天数见 expire-days，可按群覆盖 */
+    public static class Expiry {
+        /** 默认到期处理方式 */
+        private ExpiryAction action = ExpiryAction.DELETE;
+        /** 时间轮每格时长（毫秒），即到期处理的精度 */
+        private long tickMs = 1000;
+        /** 时间轮槽数 */
+        private int wheelSize = 512;
+
+        public ExpiryAction getAction() {
+            return action;
+        }
+
+        public void setAction(ExpiryAction action) {
+            this.action = action;
+        }
+
+        public long getTickMs() {
+            return tickMs;
+        }
+
+        public void setTickMs(long tickMs) {
+            this.tickMs = tickMs;
+        }
+
+        public int getWheelSize() {
+            return wheelSize;
+        }
+
+        public void setWheelSize(int wheelSize) {
+            this.wheelSize = wheelSize;
+        }
+    }
+
+    /** 群码图片直出（wxhm.image.*） */
+    public static class Image {
+        /** 浏览器 / CDN 缓存时长（秒）；群码文件名带上传时间戳、写入后不再变化，默认一年并标记 immutable */
+        private long maxAgeSeconds = 31536000;
+        /** 群码地址 HMAC 签名密钥，为空不签名 */
+        private String signSecret = "";
+        /** 配置密钥后是否拒绝不带签名的直出请求（前端回退地址不带签名，开启后回退将失效） */
+        private boolean requireSignature = false;
+        /** 上传时生成的群码变体宽度（像素），大于裁剪后原图宽度的按原宽度生成 */
+        private List<Integer> variantWidths = new ArrayList<>(List.of(720, 360));
+        /** 预览小图宽度（像素），0 不生成 */
+        private int previewWidth = 96;
+
+        public long getMaxAgeSeconds() {
+            return maxAgeSeconds;
+        }
+
+        public void setMaxAgeSeconds(long maxAgeSeconds) {
+            this.maxAgeSeconds = maxAgeSeconds;
+        }
+
+        public String getSignSecret() {
+            return signSecret;
+        }
+
+        public void setSignSecret(String signSecret) {
+            this.signSecret = signSecret;
+        }
+
+        public boolean isRequireSignature() {
+            return requireSignature;
+        }
+
+        public void setRequireSignature(boolean requireSignature) {
+            this.requireSignature = requireSignature;
+        }
+
+        public List<Integer> getVariantWidths() {
+            return variantWidths;
+        }
+
+        public void setVariantWidths(List<Integer> variantWidths) {
+            this.variantWidths = variantWidths;
+        }
+
+        public int getPreviewWidth() {
+            return previewWidth;
+        }
+
+        public void setPreviewWidth(int previewWidth) {
+            this.previewWidth = previewWidth;
+        }
+    }
+
+    /** 文件直出（wxhm.serve.*），见 FileServeService */
+    public static class Serve {
+        /** 输出字节数不小于该值时交给 Tomcat sendfile，负数关闭 sendfile（均走 FileChannel.transferTo） */
+        private long sendfileMinSize = 48 * 1024;
+        /** 文件元数据缓存时长（毫秒），期间文件被替换时最多返回旧的长度 / ETag */
+        private long metaCacheMs = 1000;
+        /** 元数据缓存条数上限，超出时整体清空 */
+        private int metaCacheSize = 4096;
+        /** 群码图片堆外内存缓存总字节数，0 关闭；应小于 -XX:MaxDirectMemorySize（默认等于 -Xmx） */
+        private long memoryCacheBytes = 32L * 1024 * 1024;
+        /** 单个文件超过该字节数不进内存缓存 */
+        private int memoryCacheMaxEntryBytes = 512 * 1024;
+
+        public long getSendfileMinSize() {
+            return sendfileMinSize;
+        }
+
+        public void setSendfileMinSize(long sendfileMinSize) {
+            this.sendfileMinSize = sendfileMinSize;
+        }
+
+        public long getMetaCacheMs() {
+            return metaCacheMs;
+        }
+
+        public void setMetaCacheMs(long metaCacheMs) {
+            this.metaCacheMs = metaCacheMs;
+        }
+
+        public int getMetaCacheSize() {
+            return metaCacheSize;
+        }
+
+        public void setMetaCacheSize(int metaCacheSize) {
+            this.metaCacheSize = metaCacheSize;
+        }
+
+        public long getMemoryCacheBytes() {
+            return memoryCacheBytes;
+        }
+
+        public void setMemoryCacheBytes(long memoryCacheBytes) {
+            this.memoryCacheBytes = memoryCacheBytes;
+        }
+
+        public int getMemoryCacheMaxEntryBytes() {
+            return memoryCacheMaxEntryBytes;
+        }
+
+        public void setMemoryCacheMaxEntryBytes(int memoryCacheMaxEntryBytes) {
+            this.memoryCacheMaxEntryBytes = memoryCacheMaxEntryBytes;
+        }
+    }
 }
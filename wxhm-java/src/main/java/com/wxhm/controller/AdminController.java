@@ -5,6 +5,7 @@ import com.wxhm.config.AdminAuthInterceptor;
 import com.wxhm.config.WxHmProperties;
 import com.wxhm.entity.WeChatTemplate;
 import com.wxhm.repository.WeChatTemplateRepository;
+import com.wxhm.service.FileServeService;
 import com.wxhm.service.QrService;
 import com.wxhm.service.StatsService;
 import com.wxhm.service.WeChatNotifyService;
@@ -12,6 +13,7 @@ import com.wxhm.service.AdminLoginSecurityService;
 import com.wxhm.util.PlatformUtils;
 import com.wxhm.wechat.WeChatApi;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
@@ -40,12 +42,13 @@ public class AdminController {
     private final AdminLoginSecurityService adminLoginSecurityService;
     private final WeChatTemplateRepository templateRepository;
     private final WeChatApi weChatApi;
+    private final FileServeService fileServeService;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     public AdminController(WxHmProperties properties, QrService qrService, StatsService statsService,
                            WeChatNotifyService weChatNotifyService, AdminLoginSecurityService adminLoginSecurityService,
                            WeChatTemplateRepository templateRepository,
-                           WeChatApi weChatApi) {
+                           WeChatApi weChatApi, FileServeService fileServeService) {
         this.properties = properties;
         this.qrService = qrService;
         this.statsService = statsService;
@@ -53,6 +56,7 @@ public class AdminController {
         this.adminLoginSecurityService = adminLoginSecurityService;
         this.templateRepository = templateRepository;
         this.weChatApi = weChatApi;
+        this.fileServeService = fileServeService;
     }
 
     private boolean checkPassword(String password) {
@@ -396,22 +400,26 @@ public class AdminController {
 
     // ==================== 自定义文件根路径访问 ====================
     @GetMapping("/{filename}")
-    public org.springframework.http.ResponseEntity<org.springframework.core.io.Resource> serveFile(@PathVariable String filename) {
+    public void serveFile(@PathVariable String filename, HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
         if (filename.contains("/") || List.of("admin", "group", "uploads", "upload", "app", "api").contains(filename)) {
-            return org.springframework.http.ResponseEntity.notFound().build();
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
         String safe = java.nio.file.Paths.get(filename).getFileName().toString();
+        java.nio.file.Path path;
         try {
-            java.nio.file.Path path = qrService.getFilePath(safe);
-            if (java.nio.file.Files.exists(path) && java.nio.file.Files.isRegularFile(path)) {
-                org.springframework.core.io.Resource resource = new org.springframework.core.io.UrlResource(path.toUri());
-                return org.springframework.http.ResponseEntity.ok()
-                        .header(org.springframework.http.HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + safe + "\"")
-                        .body(resource);
-            }
-        } catch (Exception ignored) {
+            path = qrService.getFilePath(safe);
+        } catch (Exception e) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        org.springframework.http.MediaType contentType = org.springframework.http.MediaTypeFactory.getMediaType(safe)
+                .orElse(org.springframework.http.MediaType.APPLICATION_OCTET_STREAM);
+        if (!fileServeService.serve(path, contentType, "inline; filename=\"" + safe + "\"", null, null,
+                request, response)) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
         }
-        return org.springframework.http.ResponseEntity.notFound().build();
     }
 
     // ==================== 微信公众号配置 ====================
@@ -6,25 +6,40 @@ import com.wxhm.config.WxHmProperties;
 import com.wxhm.entity.WeChatTemplate;
 import com.wxhm.repository.VisitLogRepository;
 import com.wxhm.repository.WeChatTemplateRepository;
+import com.wxhm.service.ExportService;
+import com.wxhm.service.FileServeService;
 import com.wxhm.service.MissingGroupVisitService;
 import com.wxhm.service.QrService;
+import com.wxhm.service.RetentionService;
+import com.wxhm.service.RollupService;
+import com.wxhm.service.StatsQuery;
 import com.wxhm.service.StatsService;
 import com.wxhm.service.WeChatNotifyService;
 import com.wxhm.service.AdminLoginSecurityService;
 import com.wxhm.service.GroupAliasService;
+import com.wxhm.service.GroupExpiryPolicyService;
+import com.wxhm.service.LiveStatsService;
 import com.wxhm.service.SurveyConfigService;
+import com.wxhm.service.VisitArchiveService;
+import com.wxhm.service.VisitIngestService;
 import com.wxhm.util.PlatformUtils;
 import com.wxhm.wechat.WeChatApi;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 /**
@@ -42,6 +57,14 @@ public class ApiAdminController {
     private final MissingGroupVisitService missingGroupVisitService;
     private final SurveyConfigService surveyConfigService;
     private final GroupAliasService groupAliasService;
+    private final VisitIngestService visitIngestService;
+    private final RollupService rollupService;
+    private final RetentionService retentionService;
+    private final VisitArchiveService visitArchiveService;
+    private final LiveStatsService liveStatsService;
+    private final ExportService exportService;
+    private final GroupExpiryPolicyService expiryPolicyService;
+    private final FileServeService fileServeService;
     private final VisitLogRepository visitLogRepository;
     private final WeChatTemplateRepository templateRepository;
     private final WeChatApi weChatApi;
@@ -52,6 +75,14 @@ public class ApiAdminController {
                               MissingGroupVisitService missingGroupVisitService,
                               SurveyConfigService surveyConfigService,
                               GroupAliasService groupAliasService,
+                              VisitIngestService visitIngestService,
+                              RollupService rollupService,
+                              RetentionService retentionService,
+                              VisitArchiveService visitArchiveService,
+                              LiveStatsService liveStatsService,
+                              ExportService exportService,
+                              GroupExpiryPolicyService expiryPolicyService,
+                              FileServeService fileServeService,
                               VisitLogRepository visitLogRepository,
                               WeChatTemplateRepository templateRepository, WeChatApi weChatApi) {
         this.properties = properties;
@@ -62,6 +93,14 @@ public class ApiAdminController {
         this.missingGroupVisitService = missingGroupVisitService;
         this.surveyConfigService = surveyConfigService;
         this.groupAliasService = groupAliasService;
+        this.visitIngestService = visitIngestService;
+        this.rollupService = rollupService;
+        this.retentionService = retentionService;
+        this.visitArchiveService = visitArchiveService;
+        this.liveStatsService = liveStatsService;
+        this.exportService = exportService;
+        this.expiryPolicyService = expiryPolicyService;
+        this.fileServeService = fileServeService;
         this.visitLogRepository = visitLogRepository;
         this.templateRepository = templateRepository;
         this.weChatApi = weChatApi;
@@ -190,6 +229,7 @@ public class ApiAdminController {
             LocalDateTime latest = visitLogRepository.findLatestVisitTimeByGroupName(g);
             row.put("recentVisitTime", latest != null ? latest.toString() : null);
             row.put("expireCountdownSeconds", qrActive ? qrService.getRemainingSecondsForActiveQr(g, activeQr) : 0);
+            row.put("expireDays", expiryPolicyService.expireDays(g));
             rows.add(row);
         }
         return rows;
@@ -217,6 +257,44 @@ public class ApiAdminController {
         }
     }
 
+    /** 群码有效期策略（生效值及按群覆盖值） */
+    @GetMapping("/groups/{groupName}/expiry")
+    public ResponseEntity<Map<String, Object>> groupExpiry(@PathVariable String groupName) {
+        if (!qrService.groupExists(groupName)) {
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "message", "群组不存在"));
+        }
+        return ResponseEntity.ok(expiryPolicyService.describe(groupName));
+    }
+
+    /** 按群覆盖有效期天数（expire_days）与到期处理方式（action: delete / archive），均留空则恢复全局配置 */
+    @PostMapping("/groups/expiry")
+    public ResponseEntity<Map<String, Object>> saveGroupExpiry(@RequestBody Map<String, Object> body) {
+        String groupName = body != null && body.get("group_name") != null ? String.valueOf(body.get("group_name")).trim() : "";
+        if (groupName.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "message", "group_name 不能为空"));
+        }
+        if (!qrService.groupExists(groupName)) {
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "message", "群组不存在"));
+        }
+        Object days = body.get("expire_days");
+        Long expireDays = parseNullableLong(days);
+        if (days != null && !String.valueOf(days).isBlank() && expireDays == null) {
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "message", "expire_days 应为整数"));
+        }
+        String action = body.get("action") != null ? String.valueOf(body.get("action")) : null;
+        try {
+            expiryPolicyService.save(groupName, expireDays != null ? Math.toIntExact(expireDays) : null, action);
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "message",
+                    e instanceof ArithmeticException ? "expire_days 超出范围" : e.getMessage()));
+        }
+        qrService.onExpiryPolicyChanged(groupName);
+        Map<String, Object> m = new HashMap<>(expiryPolicyService.describe(groupName));
+        m.put("ok", true);
+        m.put("message", "有效期设置已保存");
+        return ResponseEntity.ok(m);
+    }
+
     @PostMapping("/groups/upload")
     public ResponseEntity<Map<String, Object>> uploadGroup(@RequestParam String group_name,
                                                              @RequestParam MultipartFile file,
@@ -264,37 +342,248 @@ public class ApiAdminController {
     }
 
     @GetMapping("/stats")
-    public List<Map<String, Object>> stats() {
-        var statsData = statsService.getStatsData();
+    public ResponseEntity<?> stats(@RequestParam(required = false) String from,
+                                   @RequestParam(required = false) String to,
+                                   @RequestParam(required = false) List<String> groups,
+                                   @RequestParam(name = "groups[]", required = false) List<String> groupsArray,
+                                   @RequestParam(required = false) Integer limit,
+                                   @RequestParam(name = "uvMode", defaultValue = "exact") String uvMode) {
+        return statsResponse(from, to, groups, groupsArray, limit, uvMode);
+    }
+
+    @GetMapping("/stats/data")
+    public ResponseEntity<?> statsData(@RequestParam(required = false) String from,
+                                       @RequestParam(required = false) String to,
+                                       @RequestParam(required = false) List<String> groups,
+                                       @RequestParam(name = "groups[]", required = false) List<String> groupsArray,
+                                       @RequestParam(required = false) Integer limit,
+                                       @RequestParam(name = "uvMode", defaultValue = "exact") String uvMode) {
+        return statsResponse(from, to, groups, groupsArray, limit, uvMode);
+    }
+
+    /** from/to 缺省为截至今天的近 7 天；groups 与 groups[] 均可传多个群名 */
+    private ResponseEntity<?> statsResponse(String from, String to, List<String> groups, List<String> groupsArray,
+                                            Integer limit, String uvMode) {
+        StatsQuery query;
+        try {
+            query = parseStatsQuery(from, to, groups, groupsArray, limit, uvMode, 7);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "message", e.getMessage()));
+        }
+        var statsData = statsService.getStatsData(query);
         List<Map<String, Object>> list = new ArrayList<>();
         for (var e : statsData.entrySet()) {
-            Map<String, Object> item = new HashMap<>();
+            Map<String, Object> item = new HashMap<>(e.getValue());
             item.put("groupName", e.getKey());
-            item.put("trend", e.getValue().get("trend"));
-            item.put("pie", e.getValue().get("pie"));
             list.add(item);
         }
-        return list;
+        return ResponseEntity.ok(list);
     }
 
-    @GetMapping("/stats/data")
-    public List<Map<String, Object>> statsData() {
-        var statsData = statsService.getStatsData();
-        List<Map<String, Object>> chartDataList = new ArrayList<>();
-        for (var e : statsData.entrySet()) {
-            Map<String, Object> chartEntry = new HashMap<>();
-            chartEntry.put("groupName", e.getKey());
-            chartEntry.put("trend", e.getValue().get("trend"));
-            chartEntry.put("pie", e.getValue().get("pie"));
-            chartDataList.add(chartEntry);
+    /** 解析统计查询参数，from/to 缺省为截至今天的近 defaultDays 天；参数非法时抛出 IllegalArgumentException */
+    private static StatsQuery parseStatsQuery(String from, String to, List<String> groups, List<String> groupsArray,
+                                              Integer limit, String uvMode, int defaultDays) {
+        try {
+            LocalDate end = to != null && !to.isBlank() ? LocalDate.parse(to) : LocalDate.now();
+            LocalDate start = from != null && !from.isBlank() ? LocalDate.parse(from) : end.minusDays(defaultDays - 1L);
+            List<String> groupList = new ArrayList<>();
+            if (groups != null) groupList.addAll(groups);
+            if (groupsArray != null) groupList.addAll(groupsArray);
+            return new StatsQuery(start, end, groupList, limit, isApproxUv(uvMode));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("日期格式应为 yyyy-MM-dd");
+        }
+    }
+
+    /** 小时趋势：各群每日 24 小时 PV（默认近 7 天，仅读日汇总） */
+    @GetMapping("/stats/hourly")
+    public ResponseEntity<?> hourlyTrend(@RequestParam(required = false) String from,
+                                         @RequestParam(required = false) String to,
+                                         @RequestParam(required = false) List<String> groups,
+                                         @RequestParam(name = "groups[]", required = false) List<String> groupsArray,
+                                         @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(statsService.getHourlyTrend(
+                    parseStatsQuery(from, to, groups, groupsArray, limit, null, 7)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "message", e.getMessage()));
+        }
+    }
+
+    /** 星期 × 小时热力图（默认近 28 天、全部群，仅读日汇总） */
+    @GetMapping("/stats/heatmap")
+    public ResponseEntity<?> heatmap(@RequestParam(required = false) String from,
+                                     @RequestParam(required = false) String to,
+                                     @RequestParam(required = false) List<String> groups,
+                                     @RequestParam(name = "groups[]", required = false) List<String> groupsArray) {
+        try {
+            return ResponseEntity.ok(statsService.getHeatmap(
+                    parseStatsQuery(from, to, groups, groupsArray, null, null, 28)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "message", e.getMessage()));
+        }
+    }
+
+    /** 长区间趋势：已归档日期扫描归档文件，其余日期读日汇总（默认近 30 天） */
+    @GetMapping("/stats/archive")
+    public ResponseEntity<?> archiveTrend(@RequestParam(required = false) String from,
+                                          @RequestParam(required = false) String to,
+                                          @RequestParam(required = false) List<String> groups,
+                                          @RequestParam(name = "groups[]", required = false) List<String> groupsArray,
+                                          @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(visitArchiveService.query(
+                    parseStatsQuery(from, to, groups, groupsArray, limit, null, 30)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "message", e.getMessage()));
         }
-        return chartDataList;
+    }
+
+    /** 近似去重 UV：各群区间 UV 与全部群合并 UV（默认近 7 天） */
+    @GetMapping("/stats/uv-summary")
+    public ResponseEntity<?> uvSummary(@RequestParam(required = false) String from,
+                                       @RequestParam(required = false) String to) {
+        StatsQuery query;
+        try {
+            query = parseStatsQuery(from, to, null, null, null, null, 7);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "message", e.getMessage()));
+        }
+        return ResponseEntity.ok(statsService.getUvSummary(query.from(), query.to()));
+    }
+
+    /**
+     * 从 visit_log / survey_click_log 原始记录重建日汇总（默认近 7 天）。
+     * 重建期间暂停访问日志写入，区间与统计查询一样最多 {@link StatsQuery#MAX_DAYS} 天
+     */
+    @PostMapping("/stats/rollup/rebuild")
+    public ResponseEntity<?> rebuildRollup(@RequestParam(required = false) String from,
+                                           @RequestParam(required = false) String to) {
+        StatsQuery query;
+        try {
+            query = parseStatsQuery(from, to, null, null, null, null, 7);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "message", e.getMessage()));
+        }
+        Map<String, Object> m = new HashMap<>(visitIngestService.runExclusive(
+                () -> rollupService.rebuild(query.from(), query.to())));
+        m.put("ok", true);
+        return ResponseEntity.ok(m);
+    }
+
+    private static boolean isApproxUv(String uvMode) {
+        return "approx".equalsIgnoreCase(uvMode);
+    }
+
+    /**
+     * 当日实时统计推送（text/event-stream）：连接后先收到 snapshot，之后每秒收到有变化的群的 delta；
+     * 连接数已达上限时收到 rejected 事件后断开。需 X-Admin-Token 或 ?token=（EventSource 无法设置请求头）
+     */
+    @GetMapping("/stats/stream")
+    public SseEmitter statsStream() throws IOException {
+        return liveStatsService.subscribe();
+    }
+
+    /**
+     * 导出 visit_log 原始记录（format=ndjson|csv，默认 ndjson）；from/to 缺省不限，groups 与 groups[] 可传多个群名
+     */
+    @GetMapping("/export/visits")
+    public ResponseEntity<StreamingResponseBody> exportVisits(@RequestParam(required = false) String from,
+                                                              @RequestParam(required = false) String to,
+                                                              @RequestParam(required = false) List<String> groups,
+                                                              @RequestParam(name = "groups[]", required = false) List<String> groupsArray,
+                                                              @RequestParam(required = false) String format) {
+        return exportResponse(ExportService.Table.VISITS, "visits", from, to, groups, groupsArray, format);
+    }
+
+    /** 导出 survey_click_log 原始记录，参数同 /export/visits */
+    @GetMapping("/export/survey-clicks")
+    public ResponseEntity<StreamingResponseBody> exportSurveyClicks(@RequestParam(required = false) String from,
+                                                                    @RequestParam(required = false) String to,
+                                                                    @RequestParam(required = false) List<String> groups,
+                                                                    @RequestParam(name = "groups[]", required = false) List<String> groupsArray,
+                                                                    @RequestParam(required = false) String format) {
+        return exportResponse(ExportService.Table.SURVEY_CLICKS, "survey-clicks", from, to, groups, groupsArray, format);
+    }
+
+    /** 参数在开始输出前校验，非法时仍按 {ok:false, message} 返回 400 */
+    private ResponseEntity<StreamingResponseBody> exportResponse(ExportService.Table table, String name, String from, String to,
+                                                                 List<String> groups, List<String> groupsArray, String format) {
+        ExportService.ExportQuery query;
+        ExportService.Format fmt;
+        try {
+            fmt = ExportService.Format.parse(format);
+            List<String> groupList = new ArrayList<>();
+            if (groups != null) groupList.addAll(groups);
+            if (groupsArray != null) groupList.addAll(groupsArray);
+            query = new ExportService.ExportQuery(
+                    from != null && !from.isBlank() ? LocalDate.parse(from) : null,
+                    to != null && !to.isBlank() ? LocalDate.parse(to) : null,
+                    groupList);
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            String message = e instanceof DateTimeParseException ? "日期格式应为 yyyy-MM-dd" : e.getMessage();
+            byte[] json;
+            try {
+                json = objectMapper.writeValueAsBytes(Map.of("ok", false, "message", message));
+            } catch (IOException ex) {
+                json = new byte[0];
+            }
+            byte[] body = json;
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(out -> out.write(body));
+        }
+        String filename = name + (query.from() != null ? "-" + query.from() : "") + (query.to() != null ? "-" + query.to() : "")
+                + "." + fmt.getExtension();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(fmt.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(out -> exportService.export(table, query, fmt, out));
+    }
+
+    /** 访问日志写入队列指标 */
+    @GetMapping("/ingest/metrics")
+    public Map<String, Object> ingestMetrics() {
+        return visitIngestService.metrics();
+    }
+
+    /** 群码图片堆外内存缓存指标：占用、命中率、淘汰数 */
+    @GetMapping("/serve/metrics")
+    public Map<String, Object> serveMetrics() {
+        return fileServeService.memoryCacheMetrics();
+    }
+
+    /** 过期数据清理：上一轮各表删除行数与耗时 */
+    @GetMapping("/retention")
+    public Map<String, Object> retentionStatus() {
+        return retentionService.status();
+    }
+
+    /** 访问记录归档：文件数、占用空间与上一轮归档结果 */
+    @GetMapping("/archive")
+    public Map<String, Object> archiveStatus() {
+        return visitArchiveService.status();
+    }
+
+    /** 立即为已结束的日期补齐归档 */
+    @PostMapping("/archive/run")
+    public Map<String, Object> runArchive() {
+        Map<String, Object> m = new HashMap<>(visitArchiveService.archiveClosedDays());
+        m.put("ok", true);
+        return m;
+    }
+
+    /** 立即执行一轮过期数据清理 */
+    @PostMapping("/retention/run")
+    public Map<String, Object> runRetention() {
+        Map<String, Object> m = new HashMap<>(retentionService.purge());
+        m.put("ok", true);
+        return m;
     }
 
     @GetMapping("/missing-groups")
     public Map<String, Object> missingGroups() {
         return Map.of(
                 "summaryRows", missingGroupVisitService.summaryRows(),
+                "hotRows", missingGroupVisitService.hotRows(),
                 "recentRows", missingGroupVisitService.recentRows()
         );
     }
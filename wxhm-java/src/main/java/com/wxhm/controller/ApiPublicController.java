@@ -3,18 +3,19 @@ package com.wxhm.controller;
 import com.wxhm.config.WxHmProperties;
 import com.wxhm.service.MissingGroupVisitService;
 import com.wxhm.service.GroupAliasService;
+import com.wxhm.service.PublicGroupResponseCache;
 import com.wxhm.service.QrService;
 import com.wxhm.service.SurveyClickService;
-import com.wxhm.service.SurveyConfigService;
 import com.wxhm.util.PlatformUtils;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -28,19 +29,19 @@ public class ApiPublicController {
     private final QrService qrService;
     private final MissingGroupVisitService missingGroupVisitService;
     private final GroupAliasService groupAliasService;
-    private final SurveyConfigService surveyConfigService;
+    private final PublicGroupResponseCache publicGroupResponseCache;
     private final SurveyClickService surveyClickService;
 
     public ApiPublicController(WxHmProperties properties, QrService qrService,
                                MissingGroupVisitService missingGroupVisitService,
                                GroupAliasService groupAliasService,
-                               SurveyConfigService surveyConfigService,
+                               PublicGroupResponseCache publicGroupResponseCache,
                                SurveyClickService surveyClickService) {
         this.properties = properties;
         this.qrService = qrService;
         this.missingGroupVisitService = missingGroupVisitService;
         this.groupAliasService = groupAliasService;
-        this.surveyConfigService = surveyConfigService;
+        this.publicGroupResponseCache = publicGroupResponseCache;
         this.surveyClickService = surveyClickService;
     }
 
@@ -49,11 +50,11 @@ public class ApiPublicController {
         return Map.of("githubUrl", properties.getGithubUrl());
     }
 
+    /** 响应静态部分由 {@link PublicGroupResponseCache} 预编码，这里只补充 host 与今日访问数 */
     @GetMapping("/group/{groupName}")
-    public Map<String, Object> group(@PathVariable String groupName, HttpServletRequest request) {
+    public ResponseEntity<byte[]> group(@PathVariable String groupName, HttpServletRequest request) {
         String resolvedName = groupAliasService.resolveGroupName(groupName);
         boolean groupExists = qrService.groupExists(resolvedName);
-        String qrFile = groupExists ? qrService.getActiveQr(resolvedName) : null;
 
         String userAgent = request.getHeader("User-Agent");
         String platform = PlatformUtils.parsePlatform(userAgent);
@@ -67,25 +68,13 @@ public class ApiPublicController {
             missingGroupVisitService.logVisit(groupName, clientIp, platform);
         }
 
-        String wsrvUrl = "";
-        if (qrFile != null) {
-            String host = request.getHeader("Host");
-            if (host == null) host = "localhost:8092";
-            String scheme = request.getHeader("X-Forwarded-Proto");
-            if (scheme == null || scheme.isBlank()) scheme = "https";
-            String rawUrl = scheme + "://" + host + "/uploads/" + resolvedName + "/" + qrFile;
-            wsrvUrl = rawUrl + "?we=1&v=" + System.currentTimeMillis() / 1000;
-        }
-
-        Map<String, Object> m = new HashMap<>();
-        m.put("groupName", resolvedName);
-        m.put("groupExists", groupExists);
-        m.put("qrFile", qrFile);
-        m.put("wsrvUrl", wsrvUrl);
-        m.put("todayVisitCount", todayVisitCount);
-        m.put("surveyUrl", surveyConfigService.getGlobalUrl());
-        m.put("surveyButtonText", surveyConfigService.getGlobalButtonText());
-        return m;
+        String host = request.getHeader("Host");
+        if (host == null) host = "localhost:8092";
+        String scheme = request.getHeader("X-Forwarded-Proto");
+        if (scheme == null || scheme.isBlank()) scheme = "https";
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(publicGroupResponseCache.render(resolvedName, groupExists, scheme + "://" + host, todayVisitCount));
     }
 
     @PostMapping("/group/{groupName}/survey-click")
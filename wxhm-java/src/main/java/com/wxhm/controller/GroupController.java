@@ -1,18 +1,27 @@
 package com.wxhm.controller;
 
+import com.wxhm.config.WxHmProperties;
+import com.wxhm.service.FileServeService;
 import com.wxhm.service.QrService;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import com.wxhm.service.QrUrlService;
+import com.wxhm.service.QrVariantService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.view.RedirectView;
 import org.springframework.web.util.UriUtils;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
 
 /**
  * 兼容旧群链接；群码图片直出。
@@ -20,10 +29,21 @@ import java.nio.file.Path;
 @Controller
 public class GroupController {
 
+    private static final MediaType IMAGE_WEBP = MediaType.parseMediaType("image/webp");
+
     private final QrService qrService;
+    private final QrUrlService qrUrlService;
+    private final FileServeService fileServeService;
+    private final QrVariantService qrVariantService;
+    private final WxHmProperties properties;
 
-    public GroupController(QrService qrService) {
+    public GroupController(QrService qrService, QrUrlService qrUrlService, FileServeService fileServeService,
+                           QrVariantService qrVariantService, WxHmProperties properties) {
         this.qrService = qrService;
+        this.qrUrlService = qrUrlService;
+        this.fileServeService = fileServeService;
+        this.qrVariantService = qrVariantService;
+        this.properties = properties;
     }
 
     @GetMapping("/group/{groupName}")
@@ -32,22 +52,54 @@ public class GroupController {
         return new RedirectView("/app/group/" + encoded);
     }
 
+    /**
+     * 群码图片直出（见 {@link FileServeService}）。群码文件名带上传时间戳、写入后不再变化：以修改时间与大小生成强 ETag，
+     * 带 Last-Modified 与 Cache-Control: public, max-age, immutable；支持 304、Range 与 HEAD，热点图片从堆外内存缓存输出。
+     * 有上传时生成的变体时按 w 与 Accept 输出最小的可接受变体（见 {@link QrVariantService}，w=0 取原图），并带 Vary: Accept。
+     * 配置了地址签名时校验 sig（见 {@link QrUrlService}），不通过返回 403。
+     */
     @GetMapping("/uploads/{groupName}/{filename}")
-    public ResponseEntity<Resource> serveQr(@PathVariable String groupName, @PathVariable String filename) {
+    public void serveQr(@PathVariable String groupName, @PathVariable String filename,
+                        @RequestParam(required = false) String v,
+                        @RequestParam(required = false) String sig,
+                        @RequestParam(required = false) Integer w,
+                        HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!qrUrlService.isAllowed(groupName, filename, v, sig)) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        Path file;
         try {
-            Path file = qrService.getGroupQrPath(groupName, filename);
-            if (!java.nio.file.Files.exists(file) || !java.nio.file.Files.isRegularFile(file)) {
-                return ResponseEntity.notFound().build();
-            }
-            Resource resource = new UrlResource(file.toUri());
-            String contentType = "image/webp";
-            if (filename.toLowerCase().endsWith(".png")) contentType = "image/png";
-            else if (filename.toLowerCase().endsWith(".jpg") || filename.toLowerCase().endsWith(".jpeg")) contentType = "image/jpeg";
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .body(resource);
+            file = qrService.getGroupQrPath(groupName, filename);
         } catch (Exception e) {
-            return ResponseEntity.notFound().build();
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        CacheControl cacheControl = CacheControl.maxAge(Duration.ofSeconds(properties.getImage().getMaxAgeSeconds()))
+                .cachePublic()
+                .immutable();
+        String cacheKey = groupName + "/" + filename;
+        QrVariantService.Variant variant = qrVariantService.select(file, w, request.getHeader(HttpHeaders.ACCEPT));
+        if (variant != null) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            String name = variant.path().getFileName().toString();
+            if (fileServeService.serve(variant.path(), imageContentType(name), null, cacheControl,
+                    cacheKey + "#" + name, request, response)) {
+                return;
+            }
+            // 变体文件已不存在（手工删除等），丢弃变体列表后输出原图
+            qrVariantService.evict(file);
+        }
+        if (!fileServeService.serve(file, imageContentType(filename), null, cacheControl,
+                cacheKey, request, response)) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
         }
     }
+
+    private static MediaType imageContentType(String filename) {
+        String lower = filename.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".png")) return MediaType.IMAGE_PNG;
+        if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) return MediaType.IMAGE_JPEG;
+        return IMAGE_WEBP;
+    }
 }
@@ -0,0 +1,37 @@
+package com.wxhm.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * 群名字典：visit_log / survey_click_log 只存整型 group_id，群名在此表出现一次。
+ * 只追加不删除（群删除后历史记录仍需按名称统计）。
+ */
+@Entity
+@Table(name = "group_dict", indexes = {
+        @Index(name = "idx_group_dict_name", columnList = "name", unique = true)
+})
+public class GroupDict {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(nullable = false, length = 100)
+    private String name;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
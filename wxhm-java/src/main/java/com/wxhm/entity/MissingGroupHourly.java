@@ -0,0 +1,80 @@
+package com.wxhm.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 未创建群码链接访问的小时汇总：(群名, 整点) 的 PV 与 UV HyperLogLog 草图。
+ * 低频的随机群名统一计入 {@code group_name = "(other)"}，行数不随扫描流量增长。
+ */
+@Entity
+@Table(name = "missing_group_hourly", indexes = {
+        @Index(name = "idx_mgh_group_hour", columnList = "group_name, hour_start", unique = true),
+        @Index(name = "idx_mgh_hour", columnList = "hour_start")
+})
+public class MissingGroupHourly {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "group_name", nullable = false, length = 100)
+    private String groupName;
+
+    @Column(name = "hour_start", nullable = false)
+    private LocalDateTime hourStart;
+
+    @Column(nullable = false)
+    private long pv;
+
+    @Column(name = "uv_sketch")
+    private byte[] uvSketch;
+
+    @Column(name = "last_visit_at")
+    private LocalDateTime lastVisitAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public void setGroupName(String groupName) {
+        this.groupName = groupName;
+    }
+
+    public LocalDateTime getHourStart() {
+        return hourStart;
+    }
+
+    public void setHourStart(LocalDateTime hourStart) {
+        this.hourStart = hourStart;
+    }
+
+    public long getPv() {
+        return pv;
+    }
+
+    public void setPv(long pv) {
+        this.pv = pv;
+    }
+
+    public byte[] getUvSketch() {
+        return uvSketch;
+    }
+
+    public void setUvSketch(byte[] uvSketch) {
+        this.uvSketch = uvSketch;
+    }
+
+    public LocalDateTime getLastVisitAt() {
+        return lastVisitAt;
+    }
+
+    public void setLastVisitAt(LocalDateTime lastVisitAt) {
+        this.lastVisitAt = lastVisitAt;
+    }
+}
@@ -2,9 +2,12 @@ package com.wxhm.entity;
 
 import jakarta.persistence.*;
 
+/**
+ * 问卷点击日志，编码方式同 {@link VisitLog}
+ */
 @Entity
 @Table(name = "survey_click_log", indexes = {
-        @Index(name = "idx_survey_group_date", columnList = "group_name, date")
+        @Index(name = "idx_survey_group_day", columnList = "group_id, day")
 })
 public class SurveyClickLog {
 
@@ -12,17 +15,19 @@ public class SurveyClickLog {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(name = "group_name", length = 50)
-    private String groupName;
+    @Column(name = "group_id")
+    private Integer groupId;
 
-    @Column(length = 10)
-    private String date;
+    /** LocalDate.toEpochDay() */
+    private Integer day;
 
-    @Column(length = 50)
-    private String ip;
+    private byte[] ip;
 
-    @Column(length = 20)
-    private String platform;
+    private Integer platform;
+
+    /** 采样写入时一行代表的点击次数（未采样为 1） */
+    @Column(columnDefinition = "integer default 1")
+    private Integer weight = 1;
 
     public Long getId() {
         return id;
@@ -32,35 +37,43 @@ public class SurveyClickLog {
         this.id = id;
     }
 
-    public String getGroupName() {
-        return groupName;
+    public Integer getGroupId() {
+        return groupId;
     }
 
-    public void setGroupName(String groupName) {
-        this.groupName = groupName;
+    public void setGroupId(Integer groupId) {
+        this.groupId = groupId;
     }
 
-    public String getDate() {
-        return date;
+    public Integer getDay() {
+        return day;
     }
 
-    public void setDate(String date) {
-        this.date = date;
+    public void setDay(Integer day) {
+        this.day = day;
     }
 
-    public String getIp() {
+    public byte[] getIp() {
         return ip;
     }
 
-    public void setIp(String ip) {
+    public void setIp(byte[] ip) {
         this.ip = ip;
     }
 
-    public String getPlatform() {
+    public Integer getPlatform() {
         return platform;
     }
 
-    public void setPlatform(String platform) {
+    public void setPlatform(Integer platform) {
         this.platform = platform;
     }
+
+    public Integer getWeight() {
+        return weight;
+    }
+
+    public void setWeight(Integer weight) {
+        this.weight = weight;
+    }
 }
@@ -0,0 +1,138 @@
+package com.wxhm.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 按 (群, 日, 平台) 增量维护的日汇总：PV、问卷点击数、UV HyperLogLog 草图、24 小时 PV 分布。
+ * 开启访问判重时 pv 为落库（去重后）的访问数，窗口内的重复访问只计入 repeat_pv，原始 PV = pv + repeat_pv
+ */
+@Entity
+@Table(name = "visit_daily_rollup", indexes = {
+        @Index(name = "idx_rollup_group_date_platform", columnList = "group_name, date, platform", unique = true),
+        @Index(name = "idx_rollup_date", columnList = "date")
+})
+public class VisitDailyRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "group_name", nullable = false, length = 50)
+    private String groupName;
+
+    @Column(nullable = false, length = 10)
+    private String date;
+
+    @Column(nullable = false, length = 20)
+    private String platform;
+
+    @Column(nullable = false)
+    private long pv;
+
+    /** 判重窗口内的重复访问次数（未写入 visit_log） */
+    @Column(name = "repeat_pv", columnDefinition = "integer default 0 not null")
+    private long repeatPv;
+
+    @Column(name = "survey_clicks", nullable = false)
+    private long surveyClicks;
+
+    @Column(name = "uv_sketch")
+    private byte[] uvSketch;
+
+    /** 24 个小时桶的 PV（见 RollupService#encodeHours） */
+    @Column(name = "hourly_pv")
+    private byte[] hourlyPv;
+
+    /** 24 个小时桶的重复访问数（repeat_pv 按小时拆分，编码同 hourly_pv） */
+    @Column(name = "hourly_repeat_pv")
+    private byte[] hourlyRepeatPv;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public void setGroupName(String groupName) {
+        this.groupName = groupName;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public void setDate(String date) {
+        this.date = date;
+    }
+
+    public String getPlatform() {
+        return platform;
+    }
+
+    public void setPlatform(String platform) {
+        this.platform = platform;
+    }
+
+    public long getPv() {
+        return pv;
+    }
+
+    public void setPv(long pv) {
+        this.pv = pv;
+    }
+
+    public long getRepeatPv() {
+        return repeatPv;
+    }
+
+    public void setRepeatPv(long repeatPv) {
+        this.repeatPv = repeatPv;
+    }
+
+    public long getSurveyClicks() {
+        return surveyClicks;
+    }
+
+    public void setSurveyClicks(long surveyClicks) {
+        this.surveyClicks = surveyClicks;
+    }
+
+    public byte[] getUvSketch() {
+        return uvSketch;
+    }
+
+    public void setUvSketch(byte[] uvSketch) {
+        this.uvSketch = uvSketch;
+    }
+
+    public byte[] getHourlyPv() {
+        return hourlyPv;
+    }
+
+    public void setHourlyPv(byte[] hourlyPv) {
+        this.hourlyPv = hourlyPv;
+    }
+
+    public byte[] getHourlyRepeatPv() {
+        return hourlyRepeatPv;
+    }
+
+    public void setHourlyRepeatPv(byte[] hourlyRepeatPv) {
+        this.hourlyRepeatPv = hourlyRepeatPv;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
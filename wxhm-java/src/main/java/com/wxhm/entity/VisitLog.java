@@ -4,11 +4,12 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 /**
- * 访问日志
+ * 访问日志（紧凑编码）：群名存 group_dict 的整型 id，日期存 epoch day，平台存 {@link com.wxhm.util.PlatformUtils} 代码，
+ * IP 存 4/16 字节二进制（见 {@link com.wxhm.util.IpCodec#encode}）
  */
 @Entity
 @Table(name = "visit_log", indexes = {
-        @Index(name = "idx_group_date", columnList = "group_name, date")
+        @Index(name = "idx_visit_group_day", columnList = "group_id, day")
 })
 public class VisitLog {
 
@@ -16,21 +17,23 @@ public class VisitLog {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(name = "group_name", length = 50)
-    private String groupName;
+    @Column(name = "group_id")
+    private Integer groupId;
 
-    @Column(length = 10)
-    private String date;
+    /** LocalDate.toEpochDay() */
+    private Integer day;
 
-    @Column(length = 50)
-    private String ip;
+    private byte[] ip;
 
-    @Column(length = 20)
-    private String platform;
+    private Integer platform;
 
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
+    /** 采样写入时一行代表的访问次数（未采样为 1） */
+    @Column(columnDefinition = "integer default 1")
+    private Integer weight = 1;
+
     // getters and setters
     public Long getId() {
         return id;
@@ -40,35 +43,35 @@ public class VisitLog {
         this.id = id;
     }
 
-    public String getGroupName() {
-        return groupName;
+    public Integer getGroupId() {
+        return groupId;
     }
 
-    public void setGroupName(String groupName) {
-        this.groupName = groupName;
+    public void setGroupId(Integer groupId) {
+        this.groupId = groupId;
     }
 
-    public String getDate() {
-        return date;
+    public Integer getDay() {
+        return day;
     }
 
-    public void setDate(String date) {
-        this.date = date;
+    public void setDay(Integer day) {
+        this.day = day;
     }
 
-    public String getIp() {
+    public byte[] getIp() {
         return ip;
     }
 
-    public void setIp(String ip) {
+    public void setIp(byte[] ip) {
         this.ip = ip;
     }
 
-    public String getPlatform() {
+    public Integer getPlatform() {
         return platform;
     }
 
-    public void setPlatform(String platform) {
+    public void setPlatform(Integer platform) {
         this.platform = platform;
     }
 
@@ -79,4 +82,12 @@ public class VisitLog {
     public void setCreatedAt(LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
+
+    public Integer getWeight() {
+        return weight;
+    }
+
+    public void setWeight(Integer weight) {
+        this.weight = weight;
+    }
 }
@@ -14,6 +14,4 @@ public interface AdminLoginAttemptRepository extends JpaRepository<AdminLoginAtt
     Optional<AdminLoginAttempt> findFirstByIpAndSuccessFalseAndCreatedAtAfterOrderByCreatedAtDesc(String ip, LocalDateTime after);
 
     List<AdminLoginAttempt> findTop200BySuccessFalseOrderByCreatedAtDesc();
-
-    long deleteByCreatedAtBefore(LocalDateTime before);
 }
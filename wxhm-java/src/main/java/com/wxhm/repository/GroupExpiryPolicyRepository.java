@@ -0,0 +1,11 @@
+package com.wxhm.repository;
+
+import com.wxhm.entity.GroupExpiryPolicy;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface GroupExpiryPolicyRepository extends JpaRepository<GroupExpiryPolicy, Long> {
+    Optional<GroupExpiryPolicy> findByGroupName(String groupName);
+    void deleteByGroupName(String groupName);
+}
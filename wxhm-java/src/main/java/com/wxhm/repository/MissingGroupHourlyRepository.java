@@ -0,0 +1,15 @@
+package com.wxhm.repository;
+
+import com.wxhm.entity.MissingGroupHourly;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface MissingGroupHourlyRepository extends JpaRepository<MissingGroupHourly, Long> {
+
+    Optional<MissingGroupHourly> findByGroupNameAndHourStart(String groupName, LocalDateTime hourStart);
+
+    List<MissingGroupHourly> findAllByHourStartGreaterThanEqual(LocalDateTime since);
+}
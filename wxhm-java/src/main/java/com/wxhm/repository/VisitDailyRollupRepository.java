@@ -0,0 +1,14 @@
+package com.wxhm.repository;
+
+import com.wxhm.entity.VisitDailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface VisitDailyRollupRepository extends JpaRepository<VisitDailyRollup, Long> {
+
+    Optional<VisitDailyRollup> findByGroupNameAndDateAndPlatform(String groupName, String date, String platform);
+
+    List<VisitDailyRollup> findAllByDateBetween(String fromDate, String toDate);
+}
@@ -2,27 +2,59 @@ package com.wxhm.repository;
 
 import com.wxhm.entity.VisitLog;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
+/**
+ * 访问日志查询：群、日期均为整型列（group_id、epoch day），分组与比较不涉及字符串；
+ * 返回 group_id 的查询由调用方通过 {@link com.wxhm.service.GroupDictionaryService} 解析群名
+ */
 public interface VisitLogRepository extends JpaRepository<VisitLog, Long> {
 
-    long countByGroupNameAndDate(String groupName, String date);
+    /** 群累计访问次数（按采样权重求和） */
+    @Query("""
+            SELECT COALESCE(SUM(v.weight), 0) FROM VisitLog v
+            WHERE v.groupId = (SELECT d.id FROM GroupDict d WHERE d.name = :groupName)
+            """)
     long countByGroupName(String groupName);
 
-    @Query("SELECT COUNT(DISTINCT v.ip) FROM VisitLog v WHERE v.groupName = :groupName AND v.date = :date")
-    long countDistinctIpByGroupNameAndDate(String groupName, String date);
-
-    @Query("SELECT v.platform, COUNT(v) FROM VisitLog v WHERE v.groupName = :groupName AND v.date = :date GROUP BY v.platform")
-    List<Object[]> countByGroupNameAndDateGroupByPlatform(String groupName, String date);
-
-    @Query("SELECT MAX(v.createdAt) FROM VisitLog v WHERE v.groupName = :groupName")
+    @Query("SELECT v.groupId, SUM(v.weight) FROM VisitLog v WHERE v.day = :day GROUP BY v.groupId")
+    List<Object[]> countByDayGroupByGroupId(int day);
+
+    /**
+     * 区间内按 (群, 日) 汇总 PV、精确 UV 与问卷点击，一次扫描走 idx_visit_group_day / idx_survey_group_day；
+     * PV 与点击按采样权重求和，采样期间的 UV 为下界。返回 group_id、epoch day
+     */
+    @Query(value = """
+            SELECT group_id, day, SUM(pv), SUM(uv), SUM(clicks) FROM (
+                SELECT group_id, day, SUM(weight) AS pv, COUNT(DISTINCT ip) AS uv, 0 AS clicks
+                FROM visit_log WHERE day BETWEEN :fromDay AND :toDay GROUP BY group_id, day
+                UNION ALL
+                SELECT group_id, day, 0, 0, SUM(weight)
+                FROM survey_click_log WHERE day BETWEEN :fromDay AND :toDay GROUP BY group_id, day
+            ) t WHERE group_id IS NOT NULL GROUP BY group_id, day
+            """, nativeQuery = true)
+    List<Object[]> aggregateByGroupAndDay(long fromDay, long toDay);
+
+    @Query(value = """
+            SELECT group_id, day, SUM(pv), SUM(uv), SUM(clicks) FROM (
+                SELECT group_id, day, SUM(weight) AS pv, COUNT(DISTINCT ip) AS uv, 0 AS clicks
+                FROM visit_log WHERE group_id IN (:groupIds) AND day BETWEEN :fromDay AND :toDay
+                GROUP BY group_id, day
+                UNION ALL
+                SELECT group_id, day, 0, 0, SUM(weight)
+                FROM survey_click_log WHERE group_id IN (:groupIds) AND day BETWEEN :fromDay AND :toDay
+                GROUP BY group_id, day
+            ) t GROUP BY group_id, day
+            """, nativeQuery = true)
+    List<Object[]> aggregateByGroupAndDay(long fromDay, long toDay, Collection<Integer> groupIds);
+
+    @Query("""
+            SELECT MAX(v.createdAt) FROM VisitLog v
+            WHERE v.groupId = (SELECT d.id FROM GroupDict d WHERE d.name = :groupName)
+            """)
     LocalDateTime findLatestVisitTimeByGroupName(String groupName);
-
-    @Modifying
-    @Query("DELETE FROM VisitLog v WHERE v.date < :beforeDate")
-    int deleteByDateBefore(String beforeDate);
 }
@@ -45,7 +45,6 @@ public class AdminLoginSecurityService {
         // 仅失败时记录输入密码，成功场景不留明文
         a.setInputPassword(success ? null : (inputPassword == null ? "" : inputPassword));
         repository.save(a);
-        repository.deleteByCreatedAtBefore(now().minusDays(7));
     }
 
     @Transactional(readOnly = true)
@@ -0,0 +1,200 @@
+package com.wxhm.service;
+
+import com.wxhm.entity.VisitDailyRollup;
+import com.wxhm.repository.VisitDailyRollupRepository;
+import com.wxhm.repository.VisitLogRepository;
+import com.wxhm.util.HyperLogLog;
+import jakarta.annotation.PostConstruct;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 当日各群 PV/UV/问卷点击内存计数：群名驻留为整型 id，按 id 索引 LongAdder 分段计数单元，读写均为 O(1)；
+ * UV 为每群一个 HyperLogLog 草图（固定 4KB，不随 IP 数增长）。
+ * 启动时从 visit_log（及日汇总中的重复访问数、问卷点击数、UV 草图）回填当日数据，本地时间零点切换到新的一天。
+ */
+@Service
+public class DailyCounterService {
+
+    private final VisitLogRepository visitLogRepository;
+    private final VisitDailyRollupRepository rollupRepository;
+    private final GroupDictionaryService groupDictionaryService;
+
+    private final ConcurrentHashMap<String, Integer> groupIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextGroupId = new AtomicInteger();
+    private final ReentrantLock growLock = new ReentrantLock();
+    private volatile Day current = new Day(LocalDate.now());
+
+    public DailyCounterService(VisitLogRepository visitLogRepository, VisitDailyRollupRepository rollupRepository,
+                               GroupDictionaryService groupDictionaryService) {
+        this.visitLogRepository = visitLogRepository;
+        this.rollupRepository = rollupRepository;
+        this.groupDictionaryService = groupDictionaryService;
+    }
+
+    @PostConstruct
+    void seedFromDatabase() {
+        Day day = new Day(LocalDate.now());
+        int epochDay = (int) day.date.toEpochDay();
+        for (Object[] row : visitLogRepository.countByDayGroupByGroupId(epochDay)) {
+            String groupName = groupDictionaryService.nameOf((Integer) row[0]);
+            if (groupName != null) {
+                cell(day, groupName).pv.add(((Number) row[1]).longValue());
+            }
+        }
+        // 判重窗口内的重复访问不在 visit_log 中，与问卷点击一起从日汇总补上
+        String date = day.date.toString();
+        // UV 草图同样取自日汇总，与 visit_log 在同一事务内写入
+        for (VisitDailyRollup r : rollupRepository.findAllByDateBetween(date, date)) {
+            if (r.getRepeatPv() > 0 || r.getSurveyClicks() > 0 || r.getUvSketch() != null) {
+                Cell c = cell(day, r.getGroupName());
+                c.pv.add(r.getRepeatPv());
+                c.surveyClicks.add(r.getSurveyClicks());
+                if (r.getUvSketch() != null) {
+                    c.uv.merge(HyperLogLog.fromBytes(r.getUvSketch()));
+                }
+            }
+        }
+        current = day;
+    }
+
+    /** 本地零点切换；即使没有定时触发，读写时也会按日期惰性切换 */
+    @Scheduled(cron = "0 0 0 * * *")
+    void rollover() {
+        today();
+    }
+
+    public void record(String groupName, String ip, LocalDate date) {
+        Day day = today();
+        if (!day.date.equals(date)) {
+            return;
+        }
+        Cell c = cell(day, groupName);
+        c.pv.increment();
+        if (ip != null) {
+            long hash = HyperLogLog.hash64(ip);
+            synchronized (c.uv) {
+                c.uv.addHash(hash);
+            }
+        }
+    }
+
+    public void recordSurveyClick(String groupName, LocalDate date) {
+        Day day = today();
+        if (day.date.equals(date)) {
+            cell(day, groupName).surveyClicks.increment();
+        }
+    }
+
+    /** 当日各群计数快照 */
+    public record Counts(long pv, long uv, long surveyClicks) {
+    }
+
+    public record Today(LocalDate date, Map<String, Counts> groups) {
+    }
+
+    /** 遍历当日全部计数单元生成快照（只读内存，不访问数据库） */
+    public Today snapshot() {
+        Day day = today();
+        AtomicReferenceArray<Cell> cells = day.cells;
+        Map<String, Counts> groups = new HashMap<>();
+        groupIds.forEach((name, id) -> {
+            Cell c = id < cells.length() ? cells.get(id) : null;
+            if (c != null) {
+                long uv;
+                synchronized (c.uv) {
+                    uv = c.uv.estimate();
+                }
+                groups.put(name, new Counts(c.pv.sum(), uv, c.surveyClicks.sum()));
+            }
+        });
+        return new Today(day.date, groups);
+    }
+
+    public long todayPv(String groupName) {
+        Cell c = peek(today(), groupName);
+        return c != null ? c.pv.sum() : 0;
+    }
+
+    private Day today() {
+        Day day = current;
+        LocalDate now = LocalDate.now();
+        if (day.date.equals(now)) {
+            return day;
+        }
+        growLock.lock();
+        try {
+            if (!current.date.equals(now)) {
+                current = new Day(now);
+            }
+            return current;
+        } finally {
+            growLock.unlock();
+        }
+    }
+
+    private int groupId(String groupName) {
+        return groupIds.computeIfAbsent(groupName, k -> nextGroupId.getAndIncrement());
+    }
+
+    private Cell peek(Day day, String groupName) {
+        Integer id = groupIds.get(groupName);
+        if (id == null) return null;
+        AtomicReferenceArray<Cell> cells = day.cells;
+        return id < cells.length() ? cells.get(id) : null;
+    }
+
+    private Cell cell(Day day, String groupName) {
+        int id = groupId(groupName);
+        AtomicReferenceArray<Cell> cells = day.cells;
+        if (id < cells.length()) {
+            Cell c = cells.get(id);
+            if (c != null) return c;
+        }
+        growLock.lock();
+        try {
+            cells = day.cells;
+            if (id >= cells.length()) {
+                AtomicReferenceArray<Cell> grown = new AtomicReferenceArray<>(Math.max(id + 1, cells.length() * 2));
+                for (int i = 0; i < cells.length(); i++) {
+                    grown.set(i, cells.get(i));
+                }
+                day.cells = grown;
+                cells = grown;
+            }
+            Cell c = cells.get(id);
+            if (c == null) {
+                c = new Cell();
+                cells.set(id, c);
+            }
+            return c;
+        } finally {
+            growLock.unlock();
+        }
+    }
+
+    private static final class Day {
+        final LocalDate date;
+        volatile AtomicReferenceArray<Cell> cells = new AtomicReferenceArray<>(64);
+
+        Day(LocalDate date) {
+            this.date = date;
+        }
+    }
+
+    private static final class Cell {
+        final LongAdder pv = new LongAdder();
+        final LongAdder surveyClicks = new LongAdder();
+        /** HyperLogLog 非线程安全，读写均在其监视器内进行 */
+        final HyperLogLog uv = new HyperLogLog();
+    }
+}
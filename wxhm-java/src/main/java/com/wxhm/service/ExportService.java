@@ -0,0 +1,262 @@
+package com.wxhm.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wxhm.util.IpCodec;
+import com.wxhm.util.PlatformUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 原始访问 / 问卷点击记录流式导出（NDJSON 或 CSV）。
+ * 按主键做 keyset 分页（id > lastId ORDER BY id LIMIT n），每页读入固定大小的缓冲后释放数据库游标再写出，
+ * 慢客户端不会长时间占用 SQLite 读锁；不经过 JPA 实体与持久化上下文，内存占用与导出行数无关。
+ */
+@Service
+public class ExportService {
+
+    private static final int PAGE_SIZE = 1000;
+    private static final int WRITE_BUFFER = 64 * 1024;
+    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final GroupDictionaryService groupDictionaryService;
+    private final ObjectMapper objectMapper;
+
+    public ExportService(JdbcTemplate jdbcTemplate, GroupDictionaryService groupDictionaryService, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.groupDictionaryService = groupDictionaryService;
+        this.objectMapper = objectMapper;
+    }
+
+    public enum Table {
+        VISITS("visit_log", true),
+        SURVEY_CLICKS("survey_click_log", false);
+
+        final String name;
+        final boolean withCreatedAt;
+
+        Table(String name, boolean withCreatedAt) {
+            this.name = name;
+            this.withCreatedAt = withCreatedAt;
+        }
+    }
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv;charset=UTF-8", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            if (value == null || value.isBlank()) {
+                return NDJSON;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("format 仅支持 ndjson 或 csv");
+            }
+        }
+    }
+
+    /**
+     * 导出条件；from / to 为空表示不限，groups 为空表示全部群
+     */
+    public record ExportQuery(LocalDate from, LocalDate to, List<String> groups) {
+
+        public ExportQuery {
+            if (from != null && to != null && from.isAfter(to)) {
+                throw new IllegalArgumentException("开始日期不能晚于结束日期");
+            }
+            groups = groups == null ? List.of() : List.copyOf(groups);
+        }
+    }
+
+    private record Row(long id, Integer groupId, Long day, byte[] ip, int platform, int weight, Timestamp createdAt) {
+    }
+
+    /**
+     * 把符合条件的记录写入 out（调用方负责关闭 out），返回导出行数
+     */
+    public long export(Table table, ExportQuery query, Format format, OutputStream out) throws IOException {
+        List<Object> filterArgs = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT id, group_id, day, ip, platform, COALESCE(weight, 1)")
+                .append(table.withCreatedAt ? ", created_at" : "")
+                .append(" FROM ").append(table.name).append(" WHERE id > ?");
+        if (query.from() != null) {
+            sql.append(" AND day >= ?");
+            filterArgs.add(query.from().toEpochDay());
+        }
+        if (query.to() != null) {
+            sql.append(" AND day <= ?");
+            filterArgs.add(query.to().toEpochDay());
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER);
+        RowWriter rows = format == Format.CSV ? new CsvWriter(writer, table) : new NdjsonWriter(writer);
+        if (!query.groups().isEmpty()) {
+            Set<Integer> ids = groupDictionaryService.findAll(query.groups());
+            if (ids.isEmpty()) {
+                rows.finish();
+                return 0;
+            }
+            sql.append(" AND group_id IN (").append("?, ".repeat(ids.size() - 1)).append("?)");
+            filterArgs.addAll(ids);
+        }
+        sql.append(" ORDER BY id LIMIT ").append(PAGE_SIZE);
+
+        String pageSql = sql.toString();
+        Object[] args = new Object[filterArgs.size() + 1];
+        for (int i = 0; i < filterArgs.size(); i++) {
+            args[i + 1] = filterArgs.get(i);
+        }
+        List<Row> page = new ArrayList<>(PAGE_SIZE);
+        long lastId = Long.MIN_VALUE;
+        long total = 0;
+        while (true) {
+            page.clear();
+            args[0] = lastId;
+            jdbcTemplate.query(pageSql, rs -> {
+                page.add(new Row(rs.getLong(1), (Integer) rs.getObject(2), rs.getObject(3) != null ? rs.getLong(3) : null,
+                        rs.getBytes(4), rs.getInt(5), rs.getInt(6), table.withCreatedAt ? rs.getTimestamp(7) : null));
+            }, args);
+            for (Row r : page) {
+                rows.write(r);
+            }
+            total += page.size();
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+            lastId = page.get(page.size() - 1).id();
+            writer.flush();
+        }
+        rows.finish();
+        return total;
+    }
+
+    private String dateOf(Row r) {
+        return r.day() != null ? LocalDate.ofEpochDay(r.day()).toString() : null;
+    }
+
+    private interface RowWriter {
+        void write(Row row) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    /** 每行一个 JSON 对象，用 Jackson 流式生成器直接写出 */
+    private final class NdjsonWriter implements RowWriter {
+        private final Writer writer;
+        private final JsonGenerator gen;
+
+        NdjsonWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            this.gen = objectMapper.getFactory().createGenerator(writer);
+            this.gen.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(Row r) throws IOException {
+            gen.writeStartObject();
+            gen.writeNumberField("id", r.id());
+            gen.writeStringField("groupName", groupDictionaryService.nameOf(r.groupId()));
+            gen.writeStringField("date", dateOf(r));
+            gen.writeStringField("ip", IpCodec.decode(r.ip()));
+            gen.writeStringField("platform", PlatformUtils.nameOf(r.platform()));
+            gen.writeNumberField("weight", r.weight());
+            if (r.createdAt() != null) {
+                gen.writeStringField("createdAt", r.createdAt().toLocalDateTime().format(TIME_FMT));
+            }
+            gen.writeEndObject();
+            gen.flush();
+            writer.write('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            gen.flush();
+            writer.flush();
+        }
+    }
+
+    /** 带表头的 CSV，开头写 UTF-8 BOM 以便 Excel 正确识别中文 */
+    private final class CsvWriter implements RowWriter {
+        private final Writer writer;
+        private final boolean withCreatedAt;
+
+        CsvWriter(Writer writer, Table table) throws IOException {
+            this.writer = writer;
+            this.withCreatedAt = table.withCreatedAt;
+            writer.write('\uFEFF');
+            writer.write(withCreatedAt ? "id,groupName,date,ip,platform,weight,createdAt\n" : "id,groupName,date,ip,platform,weight\n");
+        }
+
+        @Override
+        public void write(Row r) throws IOException {
+            writer.write(Long.toString(r.id()));
+            writer.write(',');
+            field(groupDictionaryService.nameOf(r.groupId()));
+            writer.write(',');
+            field(dateOf(r));
+            writer.write(',');
+            field(IpCodec.decode(r.ip()));
+            writer.write(',');
+            writer.write(PlatformUtils.nameOf(r.platform()));
+            writer.write(',');
+            writer.write(Integer.toString(r.weight()));
+            if (withCreatedAt) {
+                writer.write(',');
+                field(r.createdAt() != null ? r.createdAt().toLocalDateTime().format(TIME_FMT) : null);
+            }
+            writer.write('\n');
+        }
+
+        private void field(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+            if (quote) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+    }
+}
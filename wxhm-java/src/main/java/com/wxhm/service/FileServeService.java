@@ -0,0 +1,306 @@
+package com.wxhm.service;
+
+import com.wxhm.config.WxHmProperties;
+import com.wxhm.util.DirectBufferCache;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.connector.CoyoteOutputStream;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 文件直出（群码图片与根路径自定义文件）：不经 Resource / 堆内缓冲区复制。
+ * 大文件交给 Tomcat sendfile（由容器在请求处理结束后直接从文件写到套接字），
+ * 小文件或不支持 sendfile 时用 FileChannel.transferTo 写出。
+ * 支持单段 Range（206 / 416）与 If-Range，多段 Range 按完整内容返回；If-None-Match / If-Modified-Since 命中返回 304。
+ * 文件元数据（大小、修改时间、ETag）缓存 meta-cache-ms，期间同一文件不再 stat。
+ * 调用方给出缓存键时（群码图片），内容另存入堆外 CLOCK 缓存（memory-cache-bytes），按修改时间判定版本，命中时不读磁盘。
+ */
+@Service
+public class FileServeService {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /** 文件元数据；checkedAt 为 stat 时间 */
+    public record FileMeta(long size, long lastModified, String etag, long checkedAt) {
+    }
+
+    /** 请求的字节区间 [start, end]（含两端） */
+    private record ByteRange(long start, long end) {
+        long length() {
+            return end - start + 1;
+        }
+    }
+
+    /** Range 头无法满足时的标记 */
+    private static final ByteRange UNSATISFIABLE = new ByteRange(-1, -2);
+
+    private final WxHmProperties.Serve config;
+    private final ConcurrentHashMap<Path, FileMeta> metas = new ConcurrentHashMap<>();
+    private final DirectBufferCache memoryCache;
+
+    public FileServeService(WxHmProperties properties) {
+        this.config = properties.getServe();
+        this.memoryCache = new DirectBufferCache(config.getMemoryCacheBytes(), config.getMemoryCacheMaxEntryBytes());
+    }
+
+    /**
+     * 文件元数据，不存在或不是普通文件时返回 null
+     */
+    public FileMeta stat(Path file) {
+        long now = System.currentTimeMillis();
+        FileMeta meta = metas.get(file);
+        if (meta != null && now - meta.checkedAt() < config.getMetaCacheMs()) {
+            return meta;
+        }
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attrs.isRegularFile()) {
+                metas.remove(file);
+                return null;
+            }
+            long lastModified = attrs.lastModifiedTime().toMillis();
+            meta = new FileMeta(attrs.size(), lastModified,
+                    "\"" + QrService.contentVersion(lastModified, attrs.size()) + "\"", now);
+        } catch (IOException e) {
+            metas.remove(file);
+            return null;
+        }
+        if (metas.size() >= config.getMetaCacheSize()) {
+            metas.clear();
+        }
+        metas.put(file, meta);
+        return meta;
+    }
+
+    /**
+     * 输出文件；文件不存在时不写响应并返回 false，由调用方决定 404
+     *
+     * @param contentDisposition 为空不输出
+     * @param cacheControl       为空不输出
+     * @param memoryCacheKey     内存缓存键，为空不经内存缓存
+     */
+    public boolean serve(Path file, MediaType contentType, String contentDisposition, CacheControl cacheControl,
+                         String memoryCacheKey, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        FileMeta meta = stat(file);
+        if (meta == null) {
+            return false;
+        }
+        if (cacheControl != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        }
+        // 设置 ETag / Last-Modified，命中 If-None-Match / If-Modified-Since 时置 304，If-Match 等不满足时置 412
+        if (new ServletWebRequest(request, response).checkNotModified(meta.etag(), meta.lastModified())) {
+            return true;
+        }
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(contentType.toString());
+        if (contentDisposition != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+        }
+
+        ByteRange range = null;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), meta)) {
+            range = parseRange(rangeHeader, meta.size());
+        }
+        if (range == UNSATISFIABLE) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + meta.size());
+            response.setContentLengthLong(0);
+            return true;
+        }
+        if (range == null) {
+            range = new ByteRange(0, meta.size() - 1);
+        } else {
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE,
+                    "bytes " + range.start() + "-" + range.end() + "/" + meta.size());
+        }
+        response.setContentLengthLong(range.length());
+        if (range.length() == 0 || HttpMethod.HEAD.matches(request.getMethod())) {
+            return true;
+        }
+
+        if (memoryCacheKey != null && memoryCache.isEnabled() && memoryCache.accepts(meta.size())) {
+            ByteBuffer cached = cachedContent(file, memoryCacheKey, meta);
+            if (cached != null) {
+                cached.limit((int) range.end() + 1).position((int) range.start());
+                write(cached, response.getOutputStream());
+                return true;
+            }
+        }
+        if (config.getSendfileMinSize() >= 0 && range.length() >= config.getSendfileMinSize()
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, range.start());
+            request.setAttribute(SENDFILE_END, range.end() + 1);
+            return true;
+        }
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            // 元数据缓存期内文件被删除：响应尚未提交，按不存在处理
+            metas.remove(file);
+            response.reset();
+            return false;
+        }
+        try (channel) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = range.start();
+            long remaining = range.length();
+            while (remaining > 0) {
+                long n = channel.transferTo(position, remaining, out);
+                if (n <= 0) {
+                    // 文件在缓存期内被截短
+                    metas.remove(file);
+                    throw new IOException("文件长度已变化: " + file.getFileName());
+                }
+                position += n;
+                remaining -= n;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 内存缓存中的文件内容；未命中时读入 direct buffer 并写入缓存，读取失败或长度与元数据不一致时返回 null（改走文件输出）
+     */
+    private ByteBuffer cachedContent(Path file, String key, FileMeta meta) {
+        ByteBuffer cached = memoryCache.get(key, meta.lastModified());
+        if (cached != null && cached.remaining() == meta.size()) {
+            return cached;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) meta.size());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    return null;
+                }
+            }
+            if (channel.size() != meta.size()) {
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        buffer.flip();
+        ByteBuffer stored = memoryCache.put(key, meta.lastModified(), buffer);
+        return stored != null ? stored : buffer;
+    }
+
+    /** 写出堆外内容：Tomcat 输出流直接接收 ByteBuffer，其他容器经 Channel 分块写出 */
+    private static void write(ByteBuffer content, OutputStream out) throws IOException {
+        if (out instanceof CoyoteOutputStream coyote) {
+            coyote.write(content);
+            return;
+        }
+        WritableByteChannel channel = Channels.newChannel(out);
+        while (content.hasRemaining()) {
+            channel.write(content);
+        }
+    }
+
+    /** 内存缓存指标 */
+    public Map<String, Object> memoryCacheMetrics() {
+        long hits = memoryCache.getHits();
+        long misses = memoryCache.getMisses();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", memoryCache.isEnabled());
+        m.put("entries", memoryCache.getEntries());
+        m.put("bytes", memoryCache.getBytes());
+        m.put("maxBytes", memoryCache.getMaxBytes());
+        m.put("maxEntryBytes", memoryCache.getMaxEntryBytes());
+        m.put("hits", hits);
+        m.put("misses", misses);
+        m.put("hitRatio", hits + misses > 0 ? (double) hits / (hits + misses) : 0.0);
+        m.put("loads", memoryCache.getLoads());
+        m.put("evictions", memoryCache.getEvictions());
+        return m;
+    }
+
+    /** If-Range 为强 ETag 或与修改时间（秒）一致的 HTTP 日期时才按 Range 返回，否则返回完整内容 */
+    private static boolean ifRangeMatches(String ifRange, FileMeta meta) {
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(meta.etag());
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+        try {
+            long date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return date == meta.lastModified() / 1000 * 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 解析单段 bytes Range：返回区间、UNSATISFIABLE，或 null（语法不支持 / 多段，按完整内容返回）
+     */
+    private static ByteRange parseRange(String header, long size) {
+        header = header.trim();
+        if (!header.regionMatches(true, 0, "bytes=", 0, 6) || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // bytes=-N：最后 N 个字节
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) {
+                    return UNSATISFIABLE;
+                }
+                return new ByteRange(Math.max(0, size - suffix), size - 1);
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+            if (start < 0 || end < start) {
+                return null;
+            }
+            if (start >= size) {
+                return UNSATISFIABLE;
+            }
+            return new ByteRange(start, Math.min(end, size - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
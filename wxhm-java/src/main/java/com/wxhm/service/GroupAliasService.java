@@ -2,15 +2,22 @@ package com.wxhm.service;
 
 import com.wxhm.entity.GroupAlias;
 import com.wxhm.repository.GroupAliasRepository;
+import jakarta.annotation.PostConstruct;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * 群短链名：短链名 ↔ 群名双向映射启动时全部载入内存，解析与查询只读内存，
+ * 未知名称（含扫描器随机探测的路径）在内存中即可判定不存在，不访问数据库；写操作先落库再更新内存。
+ */
 @Service
 public class GroupAliasService {
     private static final String SHORT_ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789";
@@ -19,39 +26,73 @@ public class GroupAliasService {
     private final GroupAliasRepository repository;
     private final QrService qrService;
 
+    /** 短链名 → 群名、群名 → 短链名；只在持有 writeLock 时修改，两者保持一致 */
+    private final ConcurrentHashMap<String, String> groupByShortName = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> shortNameByGroup = new ConcurrentHashMap<>();
+    /** 写操作含数据库 IO，用 ReentrantLock 而非 synchronized，避免虚拟线程 pinning */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
     public GroupAliasService(GroupAliasRepository repository, QrService qrService) {
         this.repository = repository;
         this.qrService = qrService;
     }
 
+    @PostConstruct
+    void load() {
+        writeLock.lock();
+        try {
+            for (GroupAlias a : repository.findAll()) {
+                if (a.getShortName() != null && !a.getShortName().isBlank()) {
+                    put(a.getGroupName(), a.getShortName());
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** 群名存在时原样返回，否则按短链名解析；都不匹配时返回原输入 */
     public String resolveGroupName(String input) {
         if (input == null || input.isBlank()) return input;
         if (qrService.groupExists(input)) return input;
-        String normalized = normalizeShortName(input);
-        return repository.findByShortName(normalized).map(GroupAlias::getGroupName).orElse(input);
+        // 已是规范形式时 trim / toLowerCase 返回原对象，不产生新字符串
+        return groupByShortName.getOrDefault(normalizeShortName(input), input);
     }
 
     public String getShortName(String groupName) {
-        return repository.findByGroupName(groupName).map(GroupAlias::getShortName).orElse("");
+        return shortNameByGroup.getOrDefault(groupName, "");
     }
 
     public String ensureShortName(String groupName) {
-        Optional<GroupAlias> exist = repository.findByGroupName(groupName);
-        if (exist.isPresent() && exist.get().getShortName() != null && !exist.get().getShortName().isBlank()) {
-            return exist.get().getShortName();
+        String existing = shortNameByGroup.get(groupName);
+        if (existing != null) {
+            return existing;
+        }
+        writeLock.lock();
+        try {
+            existing = shortNameByGroup.get(groupName);
+            if (existing != null) {
+                return existing;
+            }
+            String generated = generateUniqueShortName();
+            GroupAlias alias = repository.findByGroupName(groupName).orElseGet(GroupAlias::new);
+            alias.setGroupName(groupName);
+            alias.setShortName(generated);
+            repository.save(alias);
+            put(groupName, generated);
+            return generated;
+        } finally {
+            writeLock.unlock();
         }
-        String generated = generateUniqueShortName();
-        GroupAlias alias = exist.orElseGet(GroupAlias::new);
-        alias.setGroupName(groupName);
-        alias.setShortName(generated);
-        repository.save(alias);
-        return generated;
     }
 
     public Map<String, String> getShortNameMap(List<String> groupNames) {
         Map<String, String> map = new HashMap<>();
-        for (GroupAlias a : repository.findAllByGroupNameIn(groupNames)) {
-            map.put(a.getGroupName(), a.getShortName());
+        for (String g : groupNames) {
+            String shortName = shortNameByGroup.get(g);
+            if (shortName != null) {
+                map.put(g, shortName);
+            }
         }
         return map;
     }
@@ -63,25 +104,61 @@ public class GroupAliasService {
             return;
         }
         validateShortName(normalized);
-        Optional<GroupAlias> occupied = repository.findByShortName(normalized);
-        if (occupied.isPresent() && !occupied.get().getGroupName().equals(groupName)) {
-            throw new IllegalArgumentException("短链名已被其他群使用");
+        writeLock.lock();
+        try {
+            String occupiedBy = groupByShortName.get(normalized);
+            if (occupiedBy != null && !occupiedBy.equals(groupName)) {
+                throw new IllegalArgumentException("短链名已被其他群使用");
+            }
+            GroupAlias alias = repository.findByGroupName(groupName).orElseGet(GroupAlias::new);
+            alias.setGroupName(groupName);
+            alias.setShortName(normalized);
+            repository.save(alias);
+            remove(groupName);
+            put(groupName, normalized);
+        } finally {
+            writeLock.unlock();
         }
-        GroupAlias alias = repository.findByGroupName(groupName).orElseGet(GroupAlias::new);
-        alias.setGroupName(groupName);
-        alias.setShortName(normalized);
-        repository.save(alias);
     }
 
     public void onGroupRenamed(String oldName, String newName) {
-        repository.findByGroupName(oldName).ifPresent(alias -> {
-            alias.setGroupName(newName);
-            repository.save(alias);
-        });
+        writeLock.lock();
+        try {
+            repository.findByGroupName(oldName).ifPresent(alias -> {
+                alias.setGroupName(newName);
+                repository.save(alias);
+            });
+            String shortName = remove(oldName);
+            if (shortName != null) {
+                put(newName, shortName);
+            }
+        } finally {
+            writeLock.unlock();
+        }
     }
 
+    @Transactional
     public void onGroupDeleted(String groupName) {
-        repository.deleteByGroupName(groupName);
+        writeLock.lock();
+        try {
+            repository.deleteByGroupName(groupName);
+            remove(groupName);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void put(String groupName, String shortName) {
+        shortNameByGroup.put(groupName, shortName);
+        groupByShortName.put(shortName, groupName);
+    }
+
+    private String remove(String groupName) {
+        String shortName = shortNameByGroup.remove(groupName);
+        if (shortName != null) {
+            groupByShortName.remove(shortName, groupName);
+        }
+        return shortName;
     }
 
     private static void validateShortName(String shortName) {
@@ -98,7 +175,7 @@ public class GroupAliasService {
     private String generateUniqueShortName() {
         for (int i = 0; i < 50; i++) {
             String candidate = randomShortName(DEFAULT_SHORT_LENGTH);
-            if (repository.findByShortName(candidate).isEmpty()) {
+            if (!groupByShortName.containsKey(candidate)) {
                 return candidate;
             }
         }
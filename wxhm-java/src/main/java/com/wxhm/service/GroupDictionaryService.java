@@ -0,0 +1,175 @@
+package com.wxhm.service;
+
+import com.wxhm.util.IpCodec;
+import com.wxhm.util.PlatformUtils;
+import jakarta.annotation.PostConstruct;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 群名字典：群名与 group_dict.id 双向缓存，启动时全量加载（字典只增不删，规模为群数量级）。
+ * 新群名由写线程在批次事务之外登记并立即提交，批次回滚也不会留下缓存中有、库中没有的 id。
+ * <p>
+ * 启动时若 visit_log / survey_click_log 仍是旧版文本列（group_name、date、ip、platform），
+ * 按 rowid 分片转写为紧凑编码的新表后替换原表，完成后 VACUUM 回收空间。
+ */
+@Service
+public class GroupDictionaryService {
+
+    private static final int MIGRATE_CHUNK = 5000;
+
+    /** 登记新群名时持有（含数据库 IO），用 ReentrantLock 避免虚拟线程 pinning */
+    private final ReentrantLock registerLock = new ReentrantLock();
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, String> names = new ConcurrentHashMap<>();
+
+    public GroupDictionaryService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @PostConstruct
+    void init() {
+        jdbcTemplate.query("SELECT id, name FROM group_dict", rs -> {
+            put(rs.getString(2), rs.getInt(1));
+        });
+        boolean migrated = migrateLegacyTable("visit_log", "idx_visit_group_day", true);
+        migrated |= migrateLegacyTable("survey_click_log", "idx_survey_group_day", false);
+        if (migrated) {
+            try {
+                jdbcTemplate.execute("VACUUM");
+            } catch (Exception e) {
+                System.err.println("访问日志迁移后 VACUUM 失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /** 群名对应的 id，首次出现时登记（需在事务之外调用） */
+    public Integer idOf(String name) {
+        if (name == null) {
+            return null;
+        }
+        Integer id = ids.get(name);
+        return id != null ? id : register(name);
+    }
+
+    /** 只查不登记；从未出现过的群名返回 null */
+    public Integer find(String name) {
+        return name == null ? null : ids.get(name);
+    }
+
+    /** 批量查找已登记的群名 id，未登记的群名跳过 */
+    public Set<Integer> findAll(Collection<String> groupNames) {
+        Set<Integer> result = new LinkedHashSet<>();
+        for (String name : groupNames) {
+            Integer id = find(name);
+            if (id != null) result.add(id);
+        }
+        return result;
+    }
+
+    public String nameOf(Integer id) {
+        return id == null ? null : names.get(id);
+    }
+
+    private Integer register(String name) {
+        registerLock.lock();
+        try {
+            Integer id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            String select = "SELECT id FROM group_dict WHERE name = ? ORDER BY id LIMIT 1";
+            List<Integer> found = jdbcTemplate.queryForList(select, Integer.class, name);
+            if (found.isEmpty()) {
+                jdbcTemplate.update("INSERT INTO group_dict (name) VALUES (?)", name);
+                found = jdbcTemplate.queryForList(select, Integer.class, name);
+            }
+            id = found.get(0);
+            put(name, id);
+            return id;
+        } finally {
+            registerLock.unlock();
+        }
+    }
+
+    private void put(String name, int id) {
+        ids.putIfAbsent(name, id);
+        names.put(id, name);
+    }
+
+    /**
+     * 旧版文本列表 → 紧凑编码表：先登记全部群名，再按 rowid 分片转写到 {table}_compact（保留原 id），
+     * 最后在一个事务内删除原表并改名。中途中断时原表不受影响，下次启动重新迁移。
+     */
+    private boolean migrateLegacyTable(String table, String index, boolean withCreatedAt) {
+        List<String> columns = jdbcTemplate.queryForList("SELECT name FROM pragma_table_info(?)", String.class, table);
+        if (!columns.contains("group_name")) {
+            return false;
+        }
+        String target = table + "_compact";
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + target);
+        jdbcTemplate.execute("CREATE TABLE " + target + " (id integer, group_id integer, day integer, ip blob, platform integer, "
+                + (withCreatedAt ? "created_at timestamp, " : "") + "weight integer default 1, primary key (id))");
+        for (String name : jdbcTemplate.queryForList(
+                "SELECT DISTINCT group_name FROM " + table + " WHERE group_name IS NOT NULL", String.class)) {
+            idOf(name);
+        }
+
+        String select = "SELECT rowid, group_name, date, ip, platform, COALESCE(weight, 1)"
+                + (withCreatedAt ? ", created_at" : "") + " FROM " + table + " WHERE rowid > ? ORDER BY rowid LIMIT " + MIGRATE_CHUNK;
+        String insert = "INSERT INTO " + target + " (id, group_id, day, ip, platform, weight"
+                + (withCreatedAt ? ", created_at) VALUES (?, ?, ?, ?, ?, ?, ?)" : ") VALUES (?, ?, ?, ?, ?, ?)");
+        long last = Long.MIN_VALUE;
+        while (true) {
+            List<Object[]> chunk = jdbcTemplate.query(select, (rs, i) -> {
+                Object[] row = new Object[withCreatedAt ? 7 : 6];
+                row[0] = rs.getLong(1);
+                row[1] = find(rs.getString(2));
+                row[2] = epochDay(rs.getString(3));
+                row[3] = IpCodec.encode(rs.getString(4));
+                row[4] = PlatformUtils.code(rs.getString(5));
+                row[5] = rs.getInt(6);
+                if (withCreatedAt) {
+                    row[6] = rs.getObject(7);
+                }
+                return row;
+            }, last);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(insert, chunk));
+            last = (Long) chunk.get(chunk.size() - 1)[0];
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("DROP TABLE " + table);
+            jdbcTemplate.execute("ALTER TABLE " + target + " RENAME TO " + table);
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + index + " ON " + table + " (group_id, day)");
+        });
+        return true;
+    }
+
+    private static Long epochDay(String date) {
+        if (date == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(date).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.wxhm.service;
+
+import com.wxhm.config.WxHmProperties;
+import com.wxhm.entity.GroupExpiryPolicy;
+import com.wxhm.repository.GroupExpiryPolicyRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 群码有效期策略：全局 expire-days / expiry.action，可按群覆盖（group_expiry_policy 表）。
+ * 覆盖项启动时全部载入内存，查询不访问数据库。
+ */
+@Service
+public class GroupExpiryPolicyService {
+
+    private static final long MILLIS_PER_DAY = 86400_000L;
+    private static final int MAX_EXPIRE_DAYS = 3650;
+
+    private record Override(Integer expireDays, WxHmProperties.ExpiryAction action) {
+    }
+
+    private final GroupExpiryPolicyRepository repository;
+    private final WxHmProperties properties;
+    private final ConcurrentHashMap<String, Override> overrides = new ConcurrentHashMap<>();
+
+    public GroupExpiryPolicyService(GroupExpiryPolicyRepository repository, WxHmProperties properties) {
+        this.repository = repository;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    void load() {
+        for (GroupExpiryPolicy p : repository.findAll()) {
+            overrides.put(p.getGroupName(), toOverride(p));
+        }
+    }
+
+    public int expireDays(String groupName) {
+        Override o = overrides.get(groupName);
+        return o != null && o.expireDays() != null ? o.expireDays() : properties.getExpireDays();
+    }
+
+    public long expireMillis(String groupName) {
+        return expireDays(groupName) * MILLIS_PER_DAY;
+    }
+
+    public WxHmProperties.ExpiryAction action(String groupName) {
+        Override o = overrides.get(groupName);
+        return o != null && o.action() != null ? o.action() : properties.getExpiry().getAction();
+    }
+
+    /** 群的生效策略；expireDaysOverride / actionOverride 为空表示沿用全局配置 */
+    public Map<String, Object> describe(String groupName) {
+        Override o = overrides.get(groupName);
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("groupName", groupName);
+        m.put("expireDays", expireDays(groupName));
+        m.put("action", action(groupName).name().toLowerCase(Locale.ROOT));
+        m.put("expireDaysOverride", o != null ? o.expireDays() : null);
+        m.put("actionOverride", o != null && o.action() != null ? o.action().name().toLowerCase(Locale.ROOT) : null);
+        return m;
+    }
+
+    /**
+     * 保存群的覆盖策略，两项均为空时删除覆盖；参数非法时抛出 IllegalArgumentException
+     */
+    @Transactional
+    public void save(String groupName, Integer expireDays, String action) {
+        if (expireDays != null && (expireDays < 1 || expireDays > MAX_EXPIRE_DAYS)) {
+            throw new IllegalArgumentException("有效期天数应在 1-" + MAX_EXPIRE_DAYS + " 之间");
+        }
+        WxHmProperties.ExpiryAction parsed = parseAction(action);
+        if (expireDays == null && parsed == null) {
+            repository.deleteByGroupName(groupName);
+            overrides.remove(groupName);
+            return;
+        }
+        GroupExpiryPolicy policy = repository.findByGroupName(groupName).orElseGet(GroupExpiryPolicy::new);
+        policy.setGroupName(groupName);
+        policy.setExpireDays(expireDays);
+        policy.setAction(parsed != null ? parsed.name() : null);
+        repository.save(policy);
+        overrides.put(groupName, new Override(expireDays, parsed));
+    }
+
+    @Transactional
+    public void onGroupRenamed(String oldName, String newName) {
+        repository.findByGroupName(oldName).ifPresent(policy -> {
+            policy.setGroupName(newName);
+            repository.save(policy);
+        });
+        Override o = overrides.remove(oldName);
+        if (o != null) {
+            overrides.put(newName, o);
+        }
+    }
+
+    @Transactional
+    public void onGroupDeleted(String groupName) {
+        repository.deleteByGroupName(groupName);
+        overrides.remove(groupName);
+    }
+
+    private static Override toOverride(GroupExpiryPolicy p) {
+        WxHmProperties.ExpiryAction action = null;
+        try {
+            action = parseAction(p.getAction());
+        } catch (IllegalArgumentException e) {
+            System.err.println("群码到期策略无效，使用全局配置: " + p.getGroupName());
+        }
+        return new Override(p.getExpireDays(), action);
+    }
+
+    private static WxHmProperties.ExpiryAction parseAction(String action) {
+        if (action == null || action.isBlank()) {
+            return null;
+        }
+        try {
+            return WxHmProperties.ExpiryAction.valueOf(action.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("action 仅支持 delete 或 archive");
+        }
+    }
+}
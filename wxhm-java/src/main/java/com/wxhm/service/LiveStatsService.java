@@ -0,0 +1,279 @@
+package com.wxhm.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wxhm.config.WxHmProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 管理后台实时统计推送（SSE）：独立线程每隔 interval-ms 读取一次 {@link DailyCounterService} 的内存快照，
+ * 与上一次比较后把有变化的群序列化一次、推送给所有连接，连接数不影响数据库负载。
+ * <ul>
+ *   <li>snapshot：连接建立或日期切换时推送当日全部群的 pv / uv / surveyClicks</li>
+ *   <li>delta：只含有变化的群，带当前值及相对上一次推送的增量 dPv / dUv / dSurveyClicks</li>
+ * </ul>
+ * 没有其他连接时，新连接收到的快照即为下一次比较的基准，之后的变化都会出现在 delta 中；
+ * 客户端应以事件中的当前值为准，增量仅用于展示。
+ * 推送线程只把事件放入各连接的有界队列，由虚拟线程逐个连接写出：慢连接不阻塞其他连接，队列满时断开该连接（浏览器自动重连）。
+ */
+@Service
+public class LiveStatsService {
+
+    private static final long REJECT_RETRY_MS = 30000;
+    /** 单个连接最多积压的事件数 */
+    private static final int MAX_QUEUED_EVENTS = 16;
+
+    private final DailyCounterService dailyCounterService;
+    private final ObjectMapper objectMapper;
+    private final WxHmProperties.Live config;
+
+    private final CopyOnWriteArrayList<Client> clients = new CopyOnWriteArrayList<>();
+    /** 已占用的连接名额，subscribe 先占名额再建连，与 max-connections 比较不受并发影响 */
+    private final AtomicInteger slots = new AtomicInteger();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "live-stats");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ExecutorService sender =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("live-stats-send-", 0).factory());
+
+    /** 上一次比较的快照：没有连接时为空，首个连接建立时取其快照 */
+    private final AtomicReference<DailyCounterService.Today> last = new AtomicReference<>();
+    /** 只由推送线程访问 */
+    private long lastSentAt;
+
+    public LiveStatsService(DailyCounterService dailyCounterService, ObjectMapper objectMapper, WxHmProperties properties) {
+        this.dailyCounterService = dailyCounterService;
+        this.objectMapper = objectMapper;
+        this.config = properties.getLive();
+    }
+
+    @PostConstruct
+    void start() {
+        long interval = Math.max(100, config.getIntervalMs());
+        scheduler.scheduleWithFixedDelay(this::tick, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+        sender.shutdownNow();
+        for (Client client : clients) {
+            client.close();
+            client.emitter.complete();
+        }
+    }
+
+    /**
+     * 建立一个推送连接并立即发送当日快照；连接数已达上限时发送 rejected 事件并结束（浏览器稍后自动重连）
+     */
+    public SseEmitter subscribe() throws IOException {
+        SseEmitter emitter = new SseEmitter(config.getConnectionTimeoutMs());
+        if (!acquireSlot()) {
+            emitter.send(SseEmitter.event().name("rejected").reconnectTime(REJECT_RETRY_MS)
+                    .data(objectMapper.writeValueAsString(Map.of("ok", false, "message", "实时统计连接数已达上限"))));
+            emitter.complete();
+            return emitter;
+        }
+        Client client = new Client(emitter);
+        emitter.onCompletion(client::close);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> client.close());
+        try {
+            DailyCounterService.Today snapshot = dailyCounterService.snapshot();
+            emitter.send(SseEmitter.event().name("snapshot").data(snapshotJson(snapshot)));
+            last.compareAndSet(null, snapshot);
+        } catch (IOException | RuntimeException e) {
+            client.close();
+            throw e;
+        }
+        clients.add(client);
+        if (client.closed.get()) {
+            // 发送快照后连接已结束
+            clients.remove(client);
+        }
+        return emitter;
+    }
+
+    public int connections() {
+        return slots.get();
+    }
+
+    private boolean acquireSlot() {
+        int max = Math.max(1, config.getMaxConnections());
+        while (true) {
+            int n = slots.get();
+            if (n >= max) {
+                return false;
+            }
+            if (slots.compareAndSet(n, n + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void tick() {
+        try {
+            if (clients.isEmpty()) {
+                last.set(null);
+                return;
+            }
+            DailyCounterService.Today now = dailyCounterService.snapshot();
+            long nowMillis = System.currentTimeMillis();
+            DailyCounterService.Today before = last.get();
+            if (before == null || !before.date().equals(now.date())) {
+                // 日期切换，或基准在连接建立与本次推送之间被清空：推送完整快照
+                String json = snapshotJson(now);
+                broadcast(() -> SseEmitter.event().name("snapshot").data(json));
+                lastSentAt = nowMillis;
+            } else {
+                List<Map<String, Object>> changed = deltas(before, now);
+                if (!changed.isEmpty()) {
+                    Map<String, Object> m = new LinkedHashMap<>();
+                    m.put("date", now.date().toString());
+                    m.put("ts", nowMillis);
+                    m.put("groups", changed);
+                    String json = objectMapper.writeValueAsString(m);
+                    broadcast(() -> SseEmitter.event().name("delta").data(json));
+                    lastSentAt = nowMillis;
+                } else if (nowMillis - lastSentAt >= config.getHeartbeatMs()) {
+                    broadcast(() -> SseEmitter.event().comment("ping"));
+                    lastSentAt = nowMillis;
+                }
+            }
+            last.set(now);
+        } catch (Exception e) {
+            System.err.println("实时统计推送失败: " + e.getMessage());
+        }
+    }
+
+    /** 事件内容只序列化一次；SseEventBuilder 不能重复 build，每个连接各建一个。只入队，不等待写出 */
+    private void broadcast(Supplier<SseEmitter.SseEventBuilder> event) {
+        for (Client client : clients) {
+            client.offer(event.get());
+        }
+    }
+
+    /** 一个推送连接：事件先进入有界队列，同一时刻最多一个发送任务按顺序写出 */
+    private final class Client {
+        final SseEmitter emitter;
+        final ArrayBlockingQueue<SseEmitter.SseEventBuilder> queue = new ArrayBlockingQueue<>(MAX_QUEUED_EVENTS);
+        final AtomicBoolean draining = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+
+        Client(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                // 积压过多：断开，浏览器重连后重新收到快照
+                close();
+                emitter.complete();
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                SseEmitter.SseEventBuilder event;
+                while ((event = queue.poll()) != null) {
+                    try {
+                        emitter.send(event);
+                    } catch (Exception e) {
+                        close();
+                        emitter.complete();
+                        return;
+                    }
+                }
+                draining.set(false);
+            } while (!queue.isEmpty() && draining.compareAndSet(false, true));
+        }
+
+        /** 移出连接列表并归还名额，重复调用无副作用 */
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                clients.remove(this);
+                slots.decrementAndGet();
+                queue.clear();
+            }
+        }
+    }
+
+    private String snapshotJson(DailyCounterService.Today today) throws JsonProcessingException {
+        List<Map<String, Object>> groups = new ArrayList<>();
+        long pv = 0;
+        long clicks = 0;
+        for (Map.Entry<String, DailyCounterService.Counts> e : sorted(today.groups())) {
+            DailyCounterService.Counts c = e.getValue();
+            Map<String, Object> g = new LinkedHashMap<>();
+            g.put("groupName", e.getKey());
+            g.put("pv", c.pv());
+            g.put("uv", c.uv());
+            g.put("surveyClicks", c.surveyClicks());
+            groups.add(g);
+            pv += c.pv();
+            clicks += c.surveyClicks();
+        }
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("date", today.date().toString());
+        m.put("ts", System.currentTimeMillis());
+        m.put("groups", groups);
+        m.put("totalPv", pv);
+        m.put("totalSurveyClicks", clicks);
+        return objectMapper.writeValueAsString(m);
+    }
+
+    private static List<Map<String, Object>> deltas(DailyCounterService.Today before, DailyCounterService.Today now) {
+        List<Map<String, Object>> changed = new ArrayList<>();
+        DailyCounterService.Counts zero = new DailyCounterService.Counts(0, 0, 0);
+        for (Map.Entry<String, DailyCounterService.Counts> e : sorted(now.groups())) {
+            DailyCounterService.Counts c = e.getValue();
+            DailyCounterService.Counts p = before.groups().getOrDefault(e.getKey(), zero);
+            if (c.equals(p)) continue;
+            Map<String, Object> g = new LinkedHashMap<>();
+            g.put("groupName", e.getKey());
+            g.put("pv", c.pv());
+            g.put("uv", c.uv());
+            g.put("surveyClicks", c.surveyClicks());
+            g.put("dPv", c.pv() - p.pv());
+            g.put("dUv", c.uv() - p.uv());
+            g.put("dSurveyClicks", c.surveyClicks() - p.surveyClicks());
+            changed.add(g);
+        }
+        return changed;
+    }
+
+    private static List<Map.Entry<String, DailyCounterService.Counts>> sorted(Map<String, DailyCounterService.Counts> groups) {
+        return groups.entrySet().stream()
+                .sorted(Comparator.comparing(Map.Entry::getKey))
+                .toList();
+    }
+}
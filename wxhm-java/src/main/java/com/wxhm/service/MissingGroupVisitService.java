@@ -1,74 +1,279 @@
 package com.wxhm.service;
 
-import com.wxhm.entity.MissingGroupVisit;
-import com.wxhm.repository.MissingGroupVisitRepository;
+import com.wxhm.config.WxHmProperties;
+import com.wxhm.entity.MissingGroupHourly;
+import com.wxhm.repository.MissingGroupHourlyRepository;
+import com.wxhm.util.CountMinSketch;
+import com.wxhm.util.HyperLogLog;
+import com.wxhm.util.SpaceSaving;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
- * 未创建群码链接访问统计服务（缓存保留 3 天）
+ * 未创建群码链接访问统计：请求路径只更新内存，内存占用与不同群名数量无关。
+ * <ul>
+ *   <li>最近访问：固定大小的环形缓冲</li>
+ *   <li>热点群名：Count-Min Sketch + Space-Saving Top-K，每小时计数减半衰减</li>
+ *   <li>历史汇总：按 (群名, 整点) 累计 PV 与 UV 草图，定时合并写入 missing_group_hourly；
+ *       Top-K 保证计数不足 min-hits 的群名（如扫描器随机生成的名字）统一计入 {@value #OTHER_GROUP}</li>
+ * </ul>
  */
 @Service
 public class MissingGroupVisitService {
 
-    private final MissingGroupVisitRepository repository;
+    public static final String OTHER_GROUP = "(other)";
+    private static final DateTimeFormatter FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
-    public MissingGroupVisitService(MissingGroupVisitRepository repository) {
+    private final MissingGroupHourlyRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WxHmProperties properties;
+    private final int minHits;
+    private final int maxPendingKeys;
+
+    private final Object lock = new Object();
+    private final Recent[] recent;
+    private long recentCount;
+    private final CountMinSketch sketch = new CountMinSketch(4, 2048);
+    private final SpaceSaving<Hot> hot;
+    private LocalDateTime decayHour;
+    private Map<Key, Pending> pending = new HashMap<>();
+
+    public MissingGroupVisitService(MissingGroupHourlyRepository repository, JdbcTemplate jdbcTemplate,
+                                    TransactionTemplate transactionTemplate, WxHmProperties properties) {
         this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        WxHmProperties.MissingGroup config = properties.getMissingGroup();
+        this.recent = new Recent[Math.max(1, config.getRecentSize())];
+        this.hot = new SpaceSaving<>(config.getTopK());
+        this.minHits = Math.max(1, config.getMinHits());
+        this.maxPendingKeys = Math.max(1, config.getMaxPendingKeys());
     }
 
-    private LocalDateTime cutoff() {
-        return LocalDateTime.now().minusDays(3);
+    private record Recent(String groupName, String ip, String platform, LocalDateTime createdAt) {
+    }
+
+    private record Key(String groupName, LocalDateTime hourStart) {
+    }
+
+    private static final class Pending {
+        long pv;
+        HyperLogLog uv = new HyperLogLog();
+        LocalDateTime lastVisitAt;
+
+        void add(String ip, LocalDateTime at) {
+            pv++;
+            uv.add(ip);
+            if (lastVisitAt == null || at.isAfter(lastVisitAt)) lastVisitAt = at;
+        }
+
+        Pending merge(Pending other) {
+            pv += other.pv;
+            uv.merge(other.uv);
+            if (lastVisitAt == null || other.lastVisitAt.isAfter(lastVisitAt)) lastVisitAt = other.lastVisitAt;
+            return this;
+        }
+    }
+
+    private static final class Hot {
+        final HyperLogLog uv = new HyperLogLog();
+        LocalDateTime lastVisitAt;
+    }
+
+    /** 旧版逐条记录表 missing_group_visit 存在时，按小时聚合迁移后删除 */
+    @PostConstruct
+    void migrateLegacyTable() {
+        Integer exists = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = 'missing_group_visit'", Integer.class);
+        if (exists == null || exists == 0) {
+            return;
+        }
+        jdbcTemplate.query("SELECT group_name, ip, platform, created_at FROM missing_group_visit ORDER BY created_at", rs -> {
+            Timestamp ts = rs.getTimestamp(4);
+            if (rs.getString(1) == null || ts == null) return;
+            record(rs.getString(1), rs.getString(2), rs.getString(3), ts.toLocalDateTime());
+            if (pendingSize() >= maxPendingKeys) flush();
+        });
+        flush();
+        jdbcTemplate.execute("DROP TABLE missing_group_visit");
     }
 
-    @Transactional
     public void logVisit(String groupName, String ip, String platform) {
-        repository.deleteByCreatedAtBefore(cutoff());
-        MissingGroupVisit v = new MissingGroupVisit();
-        v.setGroupName(groupName);
-        v.setIp(ip);
-        v.setPlatform(platform);
-        v.setCreatedAt(LocalDateTime.now());
-        repository.save(v);
+        record(groupName, ip, platform, LocalDateTime.now());
+    }
+
+    private void record(String groupName, String ip, String platform, LocalDateTime at) {
+        LocalDateTime hour = at.truncatedTo(ChronoUnit.HOURS);
+        synchronized (lock) {
+            recent[(int) (recentCount++ % recent.length)] = new Recent(groupName, ip, platform, at);
+
+            if (decayHour == null) {
+                decayHour = hour;
+            } else if (hour.isAfter(decayHour)) {
+                decayHour = hour;
+                sketch.halve();
+                hot.halve();
+            }
+            sketch.add(groupName, 1);
+            SpaceSaving.Entry<Hot> entry = hot.offer(groupName);
+            if (entry.getPayload() == null) {
+                entry.setPayload(new Hot());
+            }
+            entry.getPayload().uv.add(ip);
+            entry.getPayload().lastVisitAt = at;
+
+            Key key = new Key(groupName, hour);
+            Pending p = pending.get(key);
+            if (p == null) {
+                if (entry.getGuaranteed() < minHits || pending.size() >= maxPendingKeys) {
+                    key = new Key(OTHER_GROUP, hour);
+                }
+                p = pending.computeIfAbsent(key, k -> new Pending());
+            }
+            p.add(ip, at);
+        }
+    }
+
+    private int pendingSize() {
+        synchronized (lock) {
+            return pending.size();
+        }
     }
 
-    @Transactional
+    /** 把内存中的小时累计合并写入 missing_group_hourly */
+    @Scheduled(fixedDelayString = "${wxhm.missing-group.flush-interval-ms:60000}",
+            initialDelayString = "${wxhm.missing-group.flush-interval-ms:60000}")
+    @PreDestroy
+    public void flush() {
+        Map<Key, Pending> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) return;
+            batch = pending;
+            pending = new HashMap<>();
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Map.Entry<Key, Pending> e : batch.entrySet()) {
+                    Key k = e.getKey();
+                    Pending p = e.getValue();
+                    MissingGroupHourly row = repository.findByGroupNameAndHourStart(k.groupName(), k.hourStart())
+                            .orElseGet(() -> {
+                                MissingGroupHourly r = new MissingGroupHourly();
+                                r.setGroupName(k.groupName());
+                                r.setHourStart(k.hourStart());
+                                return r;
+                            });
+                    row.setPv(row.getPv() + p.pv);
+                    row.setUvSketch(HyperLogLog.fromBytes(row.getUvSketch()).merge(p.uv).toBytes());
+                    if (row.getLastVisitAt() == null || p.lastVisitAt.isAfter(row.getLastVisitAt())) {
+                        row.setLastVisitAt(p.lastVisitAt);
+                    }
+                    repository.save(row);
+                }
+            });
+        } catch (Exception ex) {
+            // 事务已整体回滚：放回内存，与期间新增的累计合并，下次 flush 重试
+            synchronized (lock) {
+                batch.forEach((k, p) -> pending.merge(k, p, Pending::merge));
+            }
+            System.err.println("未创建群码访问汇总写入失败(" + batch.size() + " 条，下次重试): " + ex.getMessage());
+        }
+    }
+
+    /** 保留期内各群名汇总（已落库的小时汇总 + 尚未落库的内存累计） */
     public List<Map<String, Object>> summaryRows() {
-        repository.deleteByCreatedAtBefore(cutoff());
+        LocalDateTime since = cutoff();
+        Map<String, Pending> byGroup = new HashMap<>();
+        for (MissingGroupHourly r : repository.findAllByHourStartGreaterThanEqual(since)) {
+            Pending agg = byGroup.computeIfAbsent(r.getGroupName(), k -> new Pending());
+            agg.pv += r.getPv();
+            agg.uv.merge(HyperLogLog.fromBytes(r.getUvSketch()));
+            if (r.getLastVisitAt() != null && (agg.lastVisitAt == null || r.getLastVisitAt().isAfter(agg.lastVisitAt))) {
+                agg.lastVisitAt = r.getLastVisitAt();
+            }
+        }
+        synchronized (lock) {
+            for (Map.Entry<Key, Pending> e : pending.entrySet()) {
+                if (e.getKey().hourStart().isBefore(since)) continue;
+                Pending p = e.getValue();
+                Pending agg = byGroup.computeIfAbsent(e.getKey().groupName(), k -> new Pending());
+                agg.pv += p.pv;
+                agg.uv.merge(p.uv);
+                if (agg.lastVisitAt == null || p.lastVisitAt.isAfter(agg.lastVisitAt)) {
+                    agg.lastVisitAt = p.lastVisitAt;
+                }
+            }
+        }
+        List<Map<String, Object>> rows = new ArrayList<>();
+        byGroup.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, Pending> e) -> e.getValue().pv).reversed()
+                        .thenComparing(e -> e.getValue().lastVisitAt, Comparator.nullsLast(Comparator.reverseOrder())))
+                .forEach(e -> {
+                    Map<String, Object> m = new HashMap<>();
+                    m.put("groupName", e.getKey());
+                    m.put("pv", e.getValue().pv);
+                    m.put("uv", e.getValue().uv.estimate());
+                    m.put("lastVisit", e.getValue().lastVisitAt != null ? e.getValue().lastVisitAt.format(FMT) : "");
+                    rows.add(m);
+                });
+        return rows;
+    }
+
+    /** 当前热点群名（Top-K，PV 为衰减后的估计值，取 Top-K 计数与 Count-Min 估计中较小者） */
+    public List<Map<String, Object>> hotRows() {
         List<Map<String, Object>> rows = new ArrayList<>();
-        for (Object[] r : repository.summarizeByGroup()) {
-            Map<String, Object> m = new HashMap<>();
-            m.put("groupName", String.valueOf(r[0]));
-            m.put("pv", ((Number) r[1]).longValue());
-            m.put("uv", ((Number) r[2]).longValue());
-            LocalDateTime last = (LocalDateTime) r[3];
-            m.put("lastVisit", last.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
-            rows.add(m);
+        synchronized (lock) {
+            for (SpaceSaving.Entry<Hot> e : hot.top()) {
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("groupName", e.getKey());
+                m.put("pv", Math.min(e.getCount(), sketch.estimate(e.getKey())));
+                m.put("guaranteed", e.getGuaranteed());
+                m.put("uv", e.getPayload().uv.estimate());
+                m.put("lastVisit", e.getPayload().lastVisitAt.format(FMT));
+                rows.add(m);
+            }
         }
         return rows;
     }
 
-    @Transactional
+    /** 最近访问，新的在前 */
     public List<Map<String, Object>> recentRows() {
-        repository.deleteByCreatedAtBefore(cutoff());
         List<Map<String, Object>> rows = new ArrayList<>();
-        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        for (MissingGroupVisit v : repository.findTop200ByOrderByCreatedAtDesc()) {
-            Map<String, Object> m = new HashMap<>();
-            m.put("groupName", v.getGroupName());
-            m.put("ip", v.getIp());
-            m.put("platform", v.getPlatform());
-            m.put("createdAt", v.getCreatedAt() != null ? v.getCreatedAt().format(fmt) : "");
-            rows.add(m);
+        synchronized (lock) {
+            long from = Math.max(0, recentCount - recent.length);
+            for (long i = recentCount - 1; i >= from; i--) {
+                Recent v = recent[(int) (i % recent.length)];
+                Map<String, Object> m = new HashMap<>();
+                m.put("groupName", v.groupName());
+                m.put("ip", v.ip());
+                m.put("platform", v.platform());
+                m.put("createdAt", v.createdAt().format(FMT));
+                rows.add(m);
+            }
         }
         return rows;
     }
-}
 
+    private LocalDateTime cutoff() {
+        int days = properties.getRetention().getMissingGroupDays();
+        return days > 0 ? LocalDateTime.now().minusDays(days).truncatedTo(ChronoUnit.HOURS)
+                : LocalDateTime.now().minusYears(100);
+    }
+}
@@ -0,0 +1,111 @@
+package com.wxhm.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 公开群码页 /api/public/group/{name} 的响应缓存：每个群的静态部分（群名、群码文件、群码地址路径、问卷链接与按钮文字）
+ * 预先编码为 UTF-8 字节，按群码状态版本与全局问卷配置版本判断失效；
+ * 请求时只拼接随请求变化的 scheme://host 与今日访问数。不存在的群不缓存（避免随机路径撑大缓存）。
+ */
+@Service
+public class PublicGroupResponseCache {
+
+    private static final byte[] COUNT_FIELD = ",\"todayVisitCount\":".getBytes(StandardCharsets.UTF_8);
+
+    private final QrService qrService;
+    private final SurveyConfigService surveyConfigService;
+    private final QrUrlService qrUrlService;
+    private final ObjectMapper objectMapper;
+    private final ConcurrentHashMap<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * head 到 wsrvUrl 的开引号为止（无群码时包含完整的空 wsrvUrl 字段）；
+     * tail 为 URL 路径部分及闭引号，无群码时为 null；validUntil 为群码到期时间
+     */
+    private record Snapshot(byte[] head, byte[] tail, long qrVersion, long surveyVersion, long validUntil) {
+    }
+
+    public PublicGroupResponseCache(QrService qrService, SurveyConfigService surveyConfigService,
+                                    QrUrlService qrUrlService, ObjectMapper objectMapper) {
+        this.qrService = qrService;
+        this.surveyConfigService = surveyConfigService;
+        this.qrUrlService = qrUrlService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 生成响应 JSON 字节
+     *
+     * @param origin 群码地址的 scheme://host 部分
+     */
+    public byte[] render(String groupName, boolean groupExists, String origin, long todayVisitCount) {
+        Snapshot s;
+        if (groupExists) {
+            s = snapshots.get(groupName);
+            long qrVersion = qrService.getStateVersion();
+            SurveyConfigService.Global survey = surveyConfigService.global();
+            if (s == null || s.qrVersion() != qrVersion || s.surveyVersion() != survey.version()
+                    || System.currentTimeMillis() >= s.validUntil()) {
+                s = build(groupName, true, qrVersion, survey);
+                snapshots.put(groupName, s);
+            }
+        } else {
+            snapshots.remove(groupName);
+            s = build(groupName, false, 0, surveyConfigService.global());
+        }
+        byte[] originBytes = s.tail() != null
+                ? new String(JsonStringEncoder.getInstance().quoteAsString(origin)).getBytes(StandardCharsets.UTF_8)
+                : null;
+        byte[] count = Long.toString(todayVisitCount).getBytes(StandardCharsets.ISO_8859_1);
+        int len = s.head().length + COUNT_FIELD.length + count.length + 1;
+        if (originBytes != null) {
+            len += originBytes.length + s.tail().length;
+        }
+        byte[] out = new byte[len];
+        int pos = copy(s.head(), out, 0);
+        if (originBytes != null) {
+            pos = copy(originBytes, out, pos);
+            pos = copy(s.tail(), out, pos);
+        }
+        pos = copy(COUNT_FIELD, out, pos);
+        pos = copy(count, out, pos);
+        out[pos] = '}';
+        return out;
+    }
+
+    private Snapshot build(String groupName, boolean groupExists, long qrVersion, SurveyConfigService.Global survey) {
+        QrService.ActiveQr active = groupExists ? qrService.findActiveQr(groupName) : null;
+        try {
+            StringBuilder head = new StringBuilder(256)
+                    .append("{\"groupName\":").append(objectMapper.writeValueAsString(groupName))
+                    .append(",\"groupExists\":").append(groupExists)
+                    .append(",\"qrFile\":").append(objectMapper.writeValueAsString(active != null ? active.filename() : null))
+                    .append(",\"surveyUrl\":").append(objectMapper.writeValueAsString(survey.url()))
+                    .append(",\"surveyButtonText\":").append(objectMapper.writeValueAsString(survey.buttonText()))
+                    .append(",\"wsrvUrl\":\"");
+            byte[] tail = null;
+            long validUntil = Long.MAX_VALUE;
+            if (active != null) {
+                String path = qrUrlService.qrPath(groupName, active);
+                tail = (new String(JsonStringEncoder.getInstance().quoteAsString(path)) + "\"").getBytes(StandardCharsets.UTF_8);
+                validUntil = active.expiresAt();
+            } else {
+                head.append('"');
+            }
+            return new Snapshot(head.toString().getBytes(StandardCharsets.UTF_8), tail, qrVersion, survey.version(), validUntil);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("序列化群码页响应失败", e);
+        }
+    }
+
+    private static int copy(byte[] src, byte[] dest, int pos) {
+        System.arraycopy(src, 0, dest, pos, src.length);
+        return pos + src.length;
+    }
+}
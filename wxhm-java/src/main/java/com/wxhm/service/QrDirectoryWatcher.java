@@ -0,0 +1,180 @@
+package com.wxhm.service;
+
+import com.wxhm.config.WxHmProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * 上传目录监听：用 WatchService 监听 upload-base 及各群子目录，运维手工放入 / 删除群码图片或群目录后，
+ * 事件按群合并、静默 debounce-ms 后只重新扫描受影响的群（持续有事件时最迟 max-delay-ms 处理一次）。
+ * 事件溢出时改为全量对账；另按 reconcile-interval-ms 定时全量对账，兜底监听失效或不支持的文件系统。
+ */
+@Service
+public class QrDirectoryWatcher {
+
+    /** keys 中表示 upload-base 本身的值 */
+    private static final String BASE = "";
+
+    private final QrService qrService;
+    private final WxHmProperties properties;
+    private final WxHmProperties.Watch config;
+
+    private final Map<WatchKey, String> keys = new ConcurrentHashMap<>();
+    private WatchService watchService;
+    private Thread thread;
+    private volatile boolean running;
+    private final ReentrantLock reconcileLock = new ReentrantLock();
+
+    public QrDirectoryWatcher(QrService qrService, WxHmProperties properties) {
+        this.qrService = qrService;
+        this.properties = properties;
+        this.config = properties.getWatch();
+    }
+
+    @PostConstruct
+    void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            register(properties.getUploadBasePath(), BASE);
+            for (String group : qrService.listGroups()) {
+                registerGroup(group);
+            }
+        } catch (IOException e) {
+            System.err.println("上传目录监听启动失败，仅使用定时对账: " + e.getMessage());
+            return;
+        }
+        running = true;
+        thread = new Thread(this::runLoop, "qr-dir-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+            }
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /** 定时全量对账，并补注册监听中遗漏的群目录 */
+    @Scheduled(fixedDelayString = "${wxhm.watch.reconcile-interval-ms:300000}",
+            initialDelayString = "${wxhm.watch.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        reconcileLock.lock();
+        try {
+            qrService.reconcile();
+            if (running) {
+                for (String group : qrService.listGroups()) {
+                    registerGroup(group);
+                }
+            }
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    private void runLoop() {
+        Set<String> dirty = new HashSet<>();
+        boolean fullSync = false;
+        long firstEventAt = 0;
+        long lastEventAt = 0;
+        long debounce = Math.max(1, config.getDebounceMs());
+        while (running) {
+            WatchKey key;
+            try {
+                key = dirty.isEmpty() && !fullSync
+                        ? watchService.take()
+                        : watchService.poll(debounce, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            }
+            long now = System.currentTimeMillis();
+            if (key != null) {
+                String owner = keys.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        fullSync = true;
+                    } else if (BASE.equals(owner)) {
+                        String name = ((Path) event.context()).toString();
+                        if (qrService.isGroupDirName(name)) {
+                            if (event.kind() == ENTRY_CREATE) {
+                                registerGroup(name);
+                            }
+                            dirty.add(name);
+                        }
+                    } else if (owner != null) {
+                        dirty.add(owner);
+                    }
+                }
+                if (!key.reset()) {
+                    keys.remove(key);
+                }
+                if (firstEventAt == 0) {
+                    firstEventAt = now;
+                }
+                lastEventAt = now;
+            }
+            boolean pending = fullSync || !dirty.isEmpty();
+            if (pending && (now - lastEventAt >= debounce || now - firstEventAt >= config.getMaxDelayMs())) {
+                try {
+                    if (fullSync) {
+                        reconcile();
+                    } else {
+                        for (String group : dirty) {
+                            qrService.syncGroup(group);
+                        }
+                    }
+                } catch (Exception e) {
+                    System.err.println("同步群码目录失败: " + e.getMessage());
+                }
+                dirty.clear();
+                fullSync = false;
+                firstEventAt = 0;
+            }
+        }
+    }
+
+    private void registerGroup(String group) {
+        Path path = properties.getGroupPath(group);
+        try {
+            register(path, group);
+        } catch (IOException e) {
+            // 目录已被删除等情况，由随后的同步 / 对账处理
+        }
+    }
+
+    private void register(Path dir, String owner) throws IOException {
+        keys.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), owner);
+    }
+}
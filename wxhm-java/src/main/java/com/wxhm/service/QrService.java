@@ -1,8 +1,10 @@
 package com.wxhm.service;
 
 import com.wxhm.config.WxHmProperties;
-import com.wxhm.entity.VisitLog;
 import com.wxhm.repository.VisitLogRepository;
+import com.wxhm.util.HashedTimerWheel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.stereotype.Service;
 
@@ -13,15 +15,23 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.LocalDate;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
 /**
- * 群码服务：获取有效二维码、上传处理、过期清理
+ * 群码服务：获取有效二维码、上传处理、过期清理。
+ * 群列表与各群当前有效群码保存在内存索引中（启动时扫描一次，上传 / 更名 / 删除时更新，
+ * 手工增删的文件由 {@link QrDirectoryWatcher} 同步），公开页请求不再逐次列目录、读取文件属性。
+ * 每个有效群码入索引时按群有效期放入时间轮，到期由时间轮线程删除或归档并通知一次，请求线程不做清理。
  */
 @Service
 public class QrService {
@@ -29,16 +39,42 @@ public class QrService {
     private final WxHmProperties properties;
     private final VisitLogRepository visitLogRepository;
     private final WeChatNotifyService weChatNotifyService;
+    private final VisitIngestService visitIngestService;
+    private final DailyCounterService dailyCounterService;
+    private final GroupExpiryPolicyService expiryPolicyService;
+    private final QrVariantService qrVariantService;
 
     private static final List<String> IMAGE_EXTENSIONS = List.of(".webp", ".png", ".jpg", ".jpeg");
-    private static final long SECONDS_PER_DAY = 86400;
+    private static final String EXPIRED_DIR = "expired";
+    private static final long EXPIRY_RETRY_MIN_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long EXPIRY_RETRY_MAX_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /** 群名 → 当前有效群码，请求路径只做哈希查找，不访问文件系统 */
+    private final ConcurrentHashMap<String, ActiveQr> activeQrs = new ConcurrentHashMap<>();
+    /** 群目录名集合（有序），与 activeQrs 一起由上传 / 更名 / 删除及 {@link QrDirectoryWatcher} 维护 */
+    private final ConcurrentSkipListSet<String> groups = new ConcurrentSkipListSet<>();
+    /** 群名 → 当前有效群码的到期任务 */
+    private final ConcurrentHashMap<String, HashedTimerWheel.Timeout> expiryTimers = new ConcurrentHashMap<>();
+    /** 群名 → 过期群码连续处理失败次数（文件无法删除 / 移动），据此退避重试，只记录首次失败 */
+    private final ConcurrentHashMap<String, Integer> expiryFailures = new ConcurrentHashMap<>();
+    private final HashedTimerWheel expiryWheel;
+    /** 群列表或任一群有效群码变化时加一，供响应缓存判断失效 */
+    private final AtomicLong stateVersion = new AtomicLong();
 
     public QrService(WxHmProperties properties, VisitLogRepository visitLogRepository,
-                     WeChatNotifyService weChatNotifyService) {
+                     WeChatNotifyService weChatNotifyService, VisitIngestService visitIngestService,
+                     DailyCounterService dailyCounterService, GroupExpiryPolicyService expiryPolicyService,
+                     QrVariantService qrVariantService) {
         this.properties = properties;
         this.visitLogRepository = visitLogRepository;
         this.weChatNotifyService = weChatNotifyService;
+        this.visitIngestService = visitIngestService;
+        this.dailyCounterService = dailyCounterService;
+        this.expiryPolicyService = expiryPolicyService;
+        this.qrVariantService = qrVariantService;
         ensureDirectories();
+        this.expiryWheel = new HashedTimerWheel("qr-expiry",
+                properties.getExpiry().getTickMs(), properties.getExpiry().getWheelSize());
     }
 
     private void ensureDirectories() {
@@ -50,52 +86,241 @@ public class QrService {
         }
     }
 
+    /** 群当前最新的群码图片；expiresAt = 修改时间 + 该群有效期 */
+    public record ActiveQr(String filename, long modifiedAt, long size, long expiresAt) {
+
+        /** 内容版本，与图片直出的 ETag 一致 */
+        public String version() {
+            return contentVersion(modifiedAt, size);
+        }
+    }
+
+    /** 群码文件的内容版本：修改时间与大小（十六进制）；群码文件写入后不再改写，二者不变即内容不变 */
+    public static String contentVersion(long modifiedAt, long size) {
+        return Long.toHexString(modifiedAt) + "-" + Long.toHexString(size);
+    }
+
+    /** 启动时扫描一次全部群目录建立索引，此后由上传 / 更名 / 删除及目录监听维护 */
+    @PostConstruct
+    void buildIndex() {
+        reconcile();
+    }
+
+    @PreDestroy
+    void stopExpiryWheel() {
+        expiryWheel.stop();
+    }
+
     /**
-     * 获取群组下最近 7 天内最新的有效二维码文件名，过期文件自动删除并通知
+     * 全量对账：重新列出上传目录下的全部群目录并逐个扫描，移除已不存在的群。
+     * 用于启动、监听事件溢出及定时兜底，不在请求路径上调用
+     */
+    public void reconcile() {
+        Set<String> found = new HashSet<>();
+        try (Stream<Path> stream = Files.list(properties.getUploadBasePath())) {
+            stream.filter(Files::isDirectory)
+                    .map(p -> p.getFileName().toString())
+                    .filter(this::isGroupDirName)
+                    .forEach(found::add);
+        } catch (IOException e) {
+            System.err.println("扫描群码目录失败: " + e.getMessage());
+            return;
+        }
+        for (String name : groups) {
+            if (!found.contains(name)) {
+                syncGroup(name);
+            }
+        }
+        for (String name : found) {
+            syncGroup(name);
+        }
+    }
+
+    /** 按磁盘现状同步单个群：目录存在则加入群列表并重新扫描群码，否则从群列表和索引中移除 */
+    public void syncGroup(String groupName) {
+        if (isGroupDirName(groupName) && Files.isDirectory(properties.getGroupPath(groupName))) {
+            addGroup(groupName);
+            refreshGroup(groupName);
+        } else {
+            removeGroup(groupName);
+            removeActive(groupName);
+        }
+    }
+
+    /** 上传目录下的子目录名是否可作为群名（排除自定义文件目录） */
+    boolean isGroupDirName(String name) {
+        return !"files".equals(name) && !properties.getGroupPath(name).equals(properties.getFilesDirPath());
+    }
+
+    /**
+     * 获取群组下有效期内最新的二维码文件名，只读内存索引；已过期但时间轮尚未处理（不超过一个 tick）时返回 null
      */
     public String getActiveQr(String groupName) {
-        Path groupPath = properties.getGroupPath(groupName);
-        // 防止误操作清理自定义文件目录（uploads/files 目录只用于永久自定义文件）
-        if (groupPath.equals(properties.getFilesDirPath())) {
+        ActiveQr active = activeQrs.get(groupName);
+        if (active == null || System.currentTimeMillis() >= active.expiresAt()) {
             return null;
         }
-        if (!Files.isDirectory(groupPath)) {
-            return null;
+        return active.filename();
+    }
+
+    /** 未过期的当前群码（含修改时间与到期时间），没有时返回 null */
+    public ActiveQr findActiveQr(String groupName) {
+        ActiveQr active = activeQrs.get(groupName);
+        return active != null && System.currentTimeMillis() < active.expiresAt() ? active : null;
+    }
+
+    /** 群码状态版本：群列表或任一群有效群码变化时递增 */
+    public long getStateVersion() {
+        return stateVersion.get();
+    }
+
+    /** 群码有效期策略变化后重新计算该群到期时间 */
+    public void onExpiryPolicyChanged(String groupName) {
+        if (groups.contains(groupName)) {
+            refreshGroup(groupName);
         }
+    }
 
+    /** 时间轮线程回调：索引项仍是该群码时才处理，已被替换（新上传、更名等）的到期任务直接忽略 */
+    private void onExpired(String groupName, ActiveQr active) {
+        boolean[] removed = {false};
+        activeQrs.computeIfPresent(groupName, (k, current) -> {
+            if (!current.equals(active)) {
+                return current;
+            }
+            expiryTimers.remove(k);
+            removed[0] = true;
+            return null;
+        });
+        if (!removed[0]) {
+            return;
+        }
+        stateVersion.incrementAndGet();
+        WxHmProperties.ExpiryAction action = expiryPolicyService.action(groupName);
+        long expireMillis = expiryPolicyService.expireMillis(groupName);
         long now = System.currentTimeMillis();
-        long expireSeconds = (long) properties.getExpireDays() * SECONDS_PER_DAY;
-
+        Path groupPath = properties.getGroupPath(groupName);
+        int handled = 0;
+        IOException failure = null;
         try (Stream<Path> stream = Files.list(groupPath)) {
-            List<Path> imageFiles = stream
-                    .filter(Files::isRegularFile)
-                    .filter(p -> IMAGE_EXTENSIONS.stream()
-                            .anyMatch(ext -> p.getFileName().toString().toLowerCase().endsWith(ext)))
-                    .sorted(Comparator.comparingLong(p -> {
-                        try {
-                            return Files.getLastModifiedTime((Path) p).toMillis();
-                        } catch (IOException e) {
-                            return 0L;
-                        }
-                    }).reversed())
-                    .toList();
-
-            for (Path path : imageFiles) {
-                long ageSeconds = (now - Files.getLastModifiedTime(path).toMillis()) / 1000;
-                if (ageSeconds < expireSeconds) {
-                    return path.getFileName().toString();
+            for (Path path : stream.filter(QrService::isImage).toList()) {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                if (!attrs.isRegularFile() || now - attrs.lastModifiedTime().toMillis() < expireMillis) {
+                    continue;
+                }
+                // 变体可由原图重新生成，归档时也只保留原图
+                qrVariantService.delete(path);
+                if (action == WxHmProperties.ExpiryAction.ARCHIVE) {
+                    Path dir = groupPath.resolve(EXPIRED_DIR);
+                    Files.createDirectories(dir);
+                    Files.move(path, dir.resolve(path.getFileName()), StandardCopyOption.REPLACE_EXISTING);
                 } else {
                     Files.delete(path);
-                    weChatNotifyService.sendAsync(groupName, "群码过期自动清理", "", "系统");
                 }
+                handled++;
             }
         } catch (IOException e) {
-            System.err.println("读取群码目录失败: " + e.getMessage());
+            failure = e;
         }
-        return null;
+        if (failure != null) {
+            // 文件仍在时 refreshGroup 会重新索引该群码，putActive 按失败次数推迟下一次到期处理
+            if (expiryFailures.merge(groupName, 1, Integer::sum) == 1) {
+                System.err.println("处理过期群码失败，将退避重试: " + groupName + " " + failure.getMessage());
+            }
+        } else if (expiryFailures.remove(groupName) != null) {
+            System.err.println("过期群码处理已恢复: " + groupName);
+        }
+        if (handled > 0) {
+            weChatNotifyService.sendAsync(groupName,
+                    action == WxHmProperties.ExpiryAction.ARCHIVE ? "群码过期自动归档" : "群码过期自动清理", "", "系统");
+        }
+        refreshGroup(groupName);
+    }
+
+    /** 重新扫描单个群目录，每个文件只读取一次属性，取修改时间最新的图片写入索引 */
+    private void refreshGroup(String groupName) {
+        Path groupPath = properties.getGroupPath(groupName);
+        ActiveQr latest = null;
+        if (!groupPath.equals(properties.getFilesDirPath()) && Files.isDirectory(groupPath)) {
+            long expireMillis = expiryPolicyService.expireMillis(groupName);
+            try (Stream<Path> stream = Files.list(groupPath)) {
+                for (Path path : stream.filter(QrService::isImage).toList()) {
+                    BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                    long modified = attrs.lastModifiedTime().toMillis();
+                    if (attrs.isRegularFile() && (latest == null || modified > latest.modifiedAt())) {
+                        latest = new ActiveQr(path.getFileName().toString(), modified, attrs.size(), modified + expireMillis);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("读取群码目录失败: " + e.getMessage());
+            }
+        }
+        if (latest != null) {
+            putActive(groupName, latest);
+        } else {
+            removeActive(groupName);
+        }
+    }
+
+    /**
+     * 写入索引并按到期时间放入时间轮，替换该群原有的到期任务；索引项与到期任务在同一个 compute 内更新，
+     * 同一群的并发更新不会留下与索引不一致的任务。过期处理失败过的群码按失败次数推迟到期任务
+     */
+    private void putActive(String groupName, ActiveQr active) {
+        activeQrs.compute(groupName, (k, current) -> {
+            if (active.equals(current) && expiryTimers.containsKey(k)) {
+                return current;
+            }
+            stateVersion.incrementAndGet();
+            long deadline = active.expiresAt();
+            Integer failures = expiryFailures.get(k);
+            if (failures != null) {
+                long delay = EXPIRY_RETRY_MIN_MILLIS << Math.min(failures - 1, 6);
+                deadline = Math.max(deadline, System.currentTimeMillis() + Math.min(delay, EXPIRY_RETRY_MAX_MILLIS));
+            }
+            HashedTimerWheel.Timeout old = expiryTimers.put(k, expiryWheel.schedule(() -> onExpired(k, active), deadline));
+            if (old != null) {
+                old.cancel();
+            }
+            return active;
+        });
+    }
+
+    private void removeActive(String groupName) {
+        activeQrs.compute(groupName, (k, current) -> {
+            if (current != null) {
+                stateVersion.incrementAndGet();
+            }
+            HashedTimerWheel.Timeout old = expiryTimers.remove(k);
+            if (old != null) {
+                old.cancel();
+            }
+            expiryFailures.remove(k);
+            return null;
+        });
     }
 
-    /** 当前是否存在未过期的群码图片（与 {@link #getActiveQr} 判定一致，会顺带清理过期文件） */
+    private void addGroup(String groupName) {
+        if (groups.add(groupName)) {
+            stateVersion.incrementAndGet();
+        }
+    }
+
+    private void removeGroup(String groupName) {
+        if (groups.remove(groupName)) {
+            stateVersion.incrementAndGet();
+        }
+    }
+
+    private static boolean isImage(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        for (String ext : IMAGE_EXTENSIONS) {
+            if (name.endsWith(ext)) return true;
+        }
+        return false;
+    }
+
+    /** 当前是否存在未过期的群码图片（与 {@link #getActiveQr} 判定一致） */
     public boolean hasActiveQr(String groupName) {
         return getActiveQr(groupName) != null;
     }
@@ -106,6 +331,9 @@ public class QrService {
     public void saveGroupQr(String groupName, byte[] imageBytes) throws IOException {
         Path groupPath = properties.getGroupPath(groupName);
         Files.createDirectories(groupPath);
+        if (isGroupDirName(groupName)) {
+            addGroup(groupName);
+        }
 
         BufferedImage image = ImageIO.read(new java.io.ByteArrayInputStream(imageBytes));
         if (image == null) {
@@ -118,6 +346,8 @@ public class QrService {
         Path outputPath = groupPath.resolve(baseName + ".webp");
         try {
             if (ImageIO.write(image, "webp", outputPath.toFile())) {
+                qrVariantService.generate(outputPath, image);
+                indexUploaded(groupName, outputPath);
                 return;
             }
         } catch (Throwable t) {
@@ -128,6 +358,15 @@ public class QrService {
         if (!ImageIO.write(image, "png", outputPath.toFile())) {
             throw new IOException("无法保存为 PNG");
         }
+        qrVariantService.generate(outputPath, image);
+        indexUploaded(groupName, outputPath);
+    }
+
+    private void indexUploaded(String groupName, Path path) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        long modified = attrs.lastModifiedTime().toMillis();
+        putActive(groupName, new ActiveQr(path.getFileName().toString(), modified, attrs.size(),
+                modified + expiryPolicyService.expireMillis(groupName)));
     }
 
     private static BufferedImage ensureRgb(BufferedImage image) {
@@ -147,27 +386,29 @@ public class QrService {
     }
 
     public List<String> listGroups() {
-        try (Stream<Path> stream = Files.list(properties.getUploadBasePath())) {
-            return stream
-                    .filter(Files::isDirectory)
-                    .map(p -> p.getFileName().toString())
-                    .filter(name -> !"files".equals(name))
-                    .sorted()
-                    .toList();
-        } catch (IOException e) {
-            return List.of();
-        }
+        return List.copyOf(groups);
     }
 
     public boolean groupExists(String groupName) {
         if (groupName == null || groupName.isBlank()) return false;
-        if ("files".equals(groupName)) return false;
-        Path path = properties.getGroupPath(groupName);
-        return Files.isDirectory(path);
+        return groups.contains(groupName);
     }
 
     public void renameGroup(String oldName, String newName) throws IOException {
         Files.move(properties.getGroupPath(oldName), properties.getGroupPath(newName));
+        // 移动目录不改变文件修改时间，索引项原样迁移
+        removeGroup(oldName);
+        if (isGroupDirName(newName)) {
+            addGroup(newName);
+        }
+        expiryPolicyService.onGroupRenamed(oldName, newName);
+        // 移动目录不改变文件修改时间；到期任务绑定群名，需按新群名重新调度
+        ActiveQr active = activeQrs.get(oldName);
+        removeActive(oldName);
+        if (active != null) {
+            putActive(newName, new ActiveQr(active.filename(), active.modifiedAt(), active.size(),
+                    active.modifiedAt() + expiryPolicyService.expireMillis(newName)));
+        }
     }
 
     public void deleteGroup(String groupName) throws IOException {
@@ -176,6 +417,9 @@ public class QrService {
         if (path.equals(properties.getFilesDirPath())) {
             return;
         }
+        removeGroup(groupName);
+        removeActive(groupName);
+        expiryPolicyService.onGroupDeleted(groupName);
         if (Files.exists(path)) {
             deleteRecursively(path);
         }
@@ -204,20 +448,14 @@ public class QrService {
         return request.getRemoteAddr();
     }
 
+    /** 访问记录异步入队，由 {@link VisitIngestService} 批量落库 */
     public void logVisit(String groupName, String ip, String platform) {
-        VisitLog log = new VisitLog();
-        log.setGroupName(groupName);
-        log.setDate(LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE));
-        log.setIp(ip);
-        log.setPlatform(platform);
-        log.setCreatedAt(LocalDateTime.now());
-        visitLogRepository.save(log);
+        visitIngestService.submit(VisitEvent.visit(groupName, ip, platform, LocalDateTime.now()));
     }
 
-    /** 当前群今日访问次数（PV，含本次请求已写入的一条） */
+    /** 当前群今日访问次数（PV，含本次请求），直接读内存计数，不查库 */
     public long countTodayVisits(String groupName) {
-        String today = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
-        return visitLogRepository.countByGroupNameAndDate(groupName, today);
+        return dailyCounterService.todayPv(groupName);
     }
 
     public Path getGroupQrPath(String groupName, String filename) {
@@ -234,15 +472,8 @@ public class QrService {
 
     public long getRemainingSecondsForActiveQr(String groupName, String qrFile) {
         if (qrFile == null || qrFile.isBlank()) return 0;
-        try {
-            Path path = getGroupQrPath(groupName, qrFile);
-            if (!Files.exists(path) || !Files.isRegularFile(path)) return 0;
-            long modifiedMillis = Files.getLastModifiedTime(path).toMillis();
-            long expireMillis = modifiedMillis + (long) properties.getExpireDays() * SECONDS_PER_DAY * 1000;
-            long remain = (expireMillis - System.currentTimeMillis()) / 1000;
-            return Math.max(remain, 0);
-        } catch (IOException e) {
-            return 0;
-        }
+        ActiveQr active = activeQrs.get(groupName);
+        if (active == null || !active.filename().equals(qrFile)) return 0;
+        return Math.max((active.expiresAt() - System.currentTimeMillis()) / 1000, 0);
     }
 }
@@ -0,0 +1,81 @@
+package com.wxhm.service;
+
+import com.wxhm.config.WxHmProperties;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * 群码图片地址：/uploads/{群}/{文件}?we=1&v={内容版本}，版本取自内存中的当前群码状态（修改时间 + 大小），
+ * 同一张群码地址始终不变、可被浏览器与 CDN 长期缓存，管理员换码后地址随之变化。
+ * 配置 wxhm.image.sign-secret 后追加 sig=HMAC-SHA256(群/文件/版本)，直出时校验签名。
+ */
+@Service
+public class QrUrlService {
+
+    private static final String HMAC = "HmacSHA256";
+    /** 签名取 HMAC 前 16 字节，Base64url 编码后 22 个字符 */
+    private static final int SIG_BYTES = 16;
+
+    private final WxHmProperties.Image config;
+    private final SecretKeySpec key;
+
+    public QrUrlService(WxHmProperties properties) {
+        this.config = properties.getImage();
+        String secret = config.getSignSecret();
+        this.key = secret == null || secret.isEmpty()
+                ? null
+                : new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC);
+    }
+
+    public boolean isSigningEnabled() {
+        return key != null;
+    }
+
+    /** 当前群码的图片地址路径（不含 scheme://host） */
+    public String qrPath(String groupName, QrService.ActiveQr active) {
+        String version = active.version();
+        StringBuilder path = new StringBuilder(96)
+                .append("/uploads/").append(groupName).append('/').append(active.filename())
+                .append("?we=1&v=").append(version);
+        if (key != null) {
+            path.append("&sig=").append(sign(groupName, active.filename(), version));
+        }
+        return path.toString();
+    }
+
+    /**
+     * 直出请求是否放行：未配置密钥时全部放行；带 sig 时须与群名、文件名、版本匹配；
+     * 不带 sig 时仅在 require-signature=false 时放行（前端在地址加载失败时会回退到不带参数的地址）
+     */
+    public boolean isAllowed(String groupName, String filename, String version, String sig) {
+        if (key == null) {
+            return true;
+        }
+        if (sig == null || sig.isEmpty()) {
+            return !config.isRequireSignature();
+        }
+        if (version == null) {
+            return false;
+        }
+        byte[] expected = sign(groupName, filename, version).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, sig.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String sign(String groupName, String filename, String version) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            byte[] digest = mac.doFinal((groupName + "/" + filename + "/" + version).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, SIG_BYTES));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("群码地址签名失败", e);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.wxhm.service;
+
+import com.wxhm.config.WxHmProperties;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 群码多尺寸变体：上传时裁掉截图四周与背景同色的边距，按 variant-widths 与 preview-width 缩放，
+ * 每个宽度各写一份 WebP 与 PNG，存放在 {群目录}/.variants/{群码文件名去扩展名}/{宽度}.{格式}。
+ * 直出时按 w（期望宽度）取不小于它的最小宽度（缺省取最大宽度），再在 Accept 可接受的格式中取文件最小者；
+ * 没有变体（历史群码、手工放入的文件）、w=0 或 w 大于所有变体宽度时返回原图。原图仍是群码索引、到期与下载的依据。
+ */
+@Service
+public class QrVariantService {
+
+    public static final String VARIANTS_DIR = ".variants";
+
+    /** 与左上角像素各通道相差不超过该值视为背景 */
+    private static final int TRIM_TOLERANCE = 24;
+    private static final int MAX_CACHED_QRS = 4096;
+
+    /** 一个变体文件 */
+    public record Variant(int width, String format, Path path, long size) {
+    }
+
+    private final WxHmProperties.Image config;
+    /** 群码原图路径 -> 变体列表（空列表表示没有变体），首次请求时列目录 */
+    private final ConcurrentHashMap<Path, List<Variant>> variantsByQr = new ConcurrentHashMap<>();
+
+    public QrVariantService(WxHmProperties properties) {
+        this.config = properties.getImage();
+    }
+
+    /**
+     * 为新上传的群码生成变体；失败只记录，不影响原图
+     *
+     * @param image 已转为 RGB 的原图
+     */
+    public void generate(Path qrFile, BufferedImage image) {
+        TreeSet<Integer> widths = new TreeSet<>(Comparator.reverseOrder());
+        BufferedImage cropped = crop(image);
+        for (Integer w : config.getVariantWidths()) {
+            if (w != null && w > 0) {
+                widths.add(Math.min(w, cropped.getWidth()));
+            }
+        }
+        if (config.getPreviewWidth() > 0) {
+            widths.add(Math.min(config.getPreviewWidth(), cropped.getWidth()));
+        }
+        if (widths.isEmpty()) {
+            return;
+        }
+        Path dir = variantDir(qrFile);
+        boolean webp = true;
+        try {
+            Files.createDirectories(dir);
+            // 从大到小逐级缩放，较小的宽度以上一级结果为源
+            BufferedImage source = cropped;
+            for (int width : widths) {
+                source = scaleToWidth(source, width);
+                if (webp) {
+                    try {
+                        webp = ImageIO.write(source, "webp", dir.resolve(width + ".webp").toFile());
+                    } catch (Throwable t) {
+                        System.err.println("WebP 变体写入失败，仅生成 PNG: " + t.getMessage());
+                        webp = false;
+                    }
+                    if (!webp) {
+                        Files.deleteIfExists(dir.resolve(width + ".webp"));
+                    }
+                }
+                if (!ImageIO.write(source, "png", dir.resolve(width + ".png").toFile())) {
+                    throw new IOException("无法保存为 PNG");
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("生成群码变体失败: " + e.getMessage());
+        }
+        variantsByQr.remove(qrFile);
+    }
+
+    /** 删除群码的全部变体（原图被删除或归档时调用） */
+    public void delete(Path qrFile) {
+        Path dir = variantDir(qrFile);
+        variantsByQr.remove(qrFile);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> stream = Files.list(dir)) {
+            for (Path p : stream.toList()) {
+                Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(dir);
+        } catch (IOException e) {
+            System.err.println("删除群码变体失败: " + e.getMessage());
+        }
+    }
+
+    /** 变体文件被删除等情况下丢弃缓存的列表，下次请求重新列目录 */
+    public void evict(Path qrFile) {
+        variantsByQr.remove(qrFile);
+    }
+
+    /**
+     * 选择要输出的变体，返回 null 表示输出原图
+     *
+     * @param width  期望宽度（像素），为空取最大变体，<=0 或大于所有变体宽度时取原图
+     * @param accept 请求的 Accept 头，显式包含 image/webp 时 WebP 变体才参与选择
+     */
+    public Variant select(Path qrFile, Integer width, String accept) {
+        if (width != null && width <= 0) {
+            return null;
+        }
+        List<Variant> variants = variants(qrFile);
+        if (variants.isEmpty()) {
+            return null;
+        }
+        boolean webp = accept != null && accept.toLowerCase(Locale.ROOT).contains("image/webp");
+        int target = -1;
+        int largest = -1;
+        for (Variant v : variants) {
+            largest = Math.max(largest, v.width());
+            if (width != null && v.width() >= width && (target < 0 || v.width() < target)) {
+                target = v.width();
+            }
+        }
+        if (target < 0) {
+            if (width != null) {
+                // 变体都比期望宽度窄，放大显示会模糊，改用原图
+                return null;
+            }
+            target = largest;
+        }
+        Variant best = null;
+        for (Variant v : variants) {
+            if (v.width() == target && (webp || !"webp".equals(v.format()))
+                    && (best == null || v.size() < best.size())) {
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    private List<Variant> variants(Path qrFile) {
+        List<Variant> cached = variantsByQr.get(qrFile);
+        if (cached != null) {
+            return cached;
+        }
+        List<Variant> list = new ArrayList<>();
+        Path dir = variantDir(qrFile);
+        if (Files.isDirectory(dir)) {
+            try (Stream<Path> stream = Files.list(dir)) {
+                for (Path p : stream.toList()) {
+                    String name = p.getFileName().toString();
+                    int dot = name.indexOf('.');
+                    if (dot <= 0) {
+                        continue;
+                    }
+                    String format = name.substring(dot + 1);
+                    if (!"webp".equals(format) && !"png".equals(format)) {
+                        continue;
+                    }
+                    try {
+                        int width = Integer.parseInt(name.substring(0, dot));
+                        BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                        if (attrs.isRegularFile()) {
+                            list.add(new Variant(width, format, p, attrs.size()));
+                        }
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            } catch (IOException e) {
+                return List.of();
+            }
+        }
+        if (variantsByQr.size() >= MAX_CACHED_QRS) {
+            variantsByQr.clear();
+        }
+        List<Variant> result = List.copyOf(list);
+        variantsByQr.put(qrFile, result);
+        return result;
+    }
+
+    private static Path variantDir(Path qrFile) {
+        String name = qrFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return qrFile.resolveSibling(VARIANTS_DIR).resolve(dot > 0 ? name.substring(0, dot) : name);
+    }
+
+    /**
+     * 裁掉四周与左上角像素同色（容差内）的整行 / 整列，保留少量留白；
+     * 裁剪后不足原图宽高四分之一时视为误判，返回原图
+     */
+    private static BufferedImage crop(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        int bg = image.getRGB(0, 0);
+        int top = 0;
+        while (top < h && rowIsBackground(image, top, 0, w, bg)) top++;
+        int bottom = h;
+        while (bottom > top && rowIsBackground(image, bottom - 1, 0, w, bg)) bottom--;
+        int left = 0;
+        while (left < w && columnIsBackground(image, left, top, bottom, bg)) left++;
+        int right = w;
+        while (right > left && columnIsBackground(image, right - 1, top, bottom, bg)) right--;
+        if (right - left < w / 4 || bottom - top < h / 4) {
+            return image;
+        }
+        int pad = Math.max(4, Math.min(w, h) / 50);
+        left = Math.max(0, left - pad);
+        top = Math.max(0, top - pad);
+        right = Math.min(w, right + pad);
+        bottom = Math.min(h, bottom + pad);
+        if (left == 0 && top == 0 && right == w && bottom == h) {
+            return image;
+        }
+        return image.getSubimage(left, top, right - left, bottom - top);
+    }
+
+    private static boolean rowIsBackground(BufferedImage image, int y, int x0, int x1, int bg) {
+        for (int x = x0; x < x1; x++) {
+            if (!isBackground(image.getRGB(x, y), bg)) return false;
+        }
+        return true;
+    }
+
+    private static boolean columnIsBackground(BufferedImage image, int x, int y0, int y1, int bg) {
+        for (int y = y0; y < y1; y++) {
+            if (!isBackground(image.getRGB(x, y), bg)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isBackground(int rgb, int bg) {
+        return Math.abs(((rgb >> 16) & 0xff) - ((bg >> 16) & 0xff)) <= TRIM_TOLERANCE
+                && Math.abs(((rgb >> 8) & 0xff) - ((bg >> 8) & 0xff)) <= TRIM_TOLERANCE
+                && Math.abs((rgb & 0xff) - (bg & 0xff)) <= TRIM_TOLERANCE;
+    }
+
+    /** 等比缩放到指定宽度：先逐次减半再做一次双线性插值，避免一次大比例缩小产生锯齿与摩尔纹 */
+    private static BufferedImage scaleToWidth(BufferedImage image, int width) {
+        BufferedImage current = image;
+        while (current.getWidth() / 2 >= width) {
+            current = resize(current, current.getWidth() / 2, Math.max(1, current.getHeight() / 2));
+        }
+        if (current.getWidth() != width) {
+            int height = (int) Math.max(1, Math.round((double) current.getHeight() * width / current.getWidth()));
+            current = resize(current, width, height);
+        }
+        return current;
+    }
+
+    private static BufferedImage resize(BufferedImage image, int width, int height) {
+        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return out;
+    }
+}
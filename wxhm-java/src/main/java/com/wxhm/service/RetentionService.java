@@ -0,0 +1,198 @@
+package com.wxhm.service;
+
+import com.wxhm.config.WxHmProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 数据保留：定时按表配置的保留天数清理过期记录，读写热路径不再做 DELETE。
+ * <p>
+ * 记录按时间顺序插入，过期行集中在 rowid 低端：从表内最小 rowid 开始，每次只删一个 rowid 区间内的过期行
+ * （自动提交，单条语句持有 SQLite 写锁的时间有上限），区间内出现未过期的行即视为到达边界。
+ * visit_log / survey_click_log 的分片在 {@link VisitIngestService#runExclusive} 中执行，与批量写入、汇总重建交替进行。
+ * 启用归档时先为已结束的日期补齐归档文件，归档失败则本轮不清理 visit_log。
+ */
+@Service
+public class RetentionService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VisitIngestService visitIngestService;
+    private final VisitArchiveService visitArchiveService;
+    private final WxHmProperties.Retention config;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    public RetentionService(JdbcTemplate jdbcTemplate, VisitIngestService visitIngestService,
+                            VisitArchiveService visitArchiveService, WxHmProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.visitIngestService = visitIngestService;
+        this.visitArchiveService = visitArchiveService;
+        this.config = properties.getRetention();
+    }
+
+    /**
+     * @param appendOnly 只追加的日志表：rowid 与时间同序，遇到未过期行即停止；
+     *                   否则（汇总表会按日期重建、rowid 乱序）先取过期行的最大 rowid 作为上界
+     */
+    private record Target(String table, String column, int days, CutoffType cutoffType,
+                          boolean ingestTable, boolean appendOnly) {
+        Object cutoff() {
+            return switch (cutoffType) {
+                case EPOCH_DAY -> LocalDate.now().minusDays(days).toEpochDay();
+                case DATE -> LocalDate.now().minusDays(days).toString();
+                case TIMESTAMP -> Timestamp.valueOf(LocalDateTime.now().minusDays(days));
+            };
+        }
+    }
+
+    /** 过期判断列的类型：整型 epoch day、yyyy-MM-dd 字符串或时间戳 */
+    private enum CutoffType {
+        EPOCH_DAY, DATE, TIMESTAMP
+    }
+
+    private List<Target> targets() {
+        return List.of(
+                new Target("visit_log", "day", config.getVisitLogDays(), CutoffType.EPOCH_DAY, true, true),
+                new Target("survey_click_log", "day", config.getSurveyClickLogDays(), CutoffType.EPOCH_DAY, true, true),
+                new Target("missing_group_hourly", "hour_start", config.getMissingGroupDays(), CutoffType.TIMESTAMP, false, false),
+                new Target("admin_login_attempt", "created_at", config.getLoginAttemptDays(), CutoffType.TIMESTAMP, false, true),
+                new Target("visit_daily_rollup", "date", config.getRollupDays(), CutoffType.DATE, false, false)
+        );
+    }
+
+    @Scheduled(cron = "${wxhm.retention.cron:0 7 * * * *}")
+    void scheduledPurge() {
+        try {
+            purge();
+        } catch (Exception e) {
+            System.err.println("过期数据清理失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 执行一轮清理并返回各表删除行数、分片数与耗时；已有清理在进行时直接返回上一轮结果。
+     */
+    public Map<String, Object> purge() {
+        if (!running.compareAndSet(false, true)) {
+            return status();
+        }
+        try {
+            long start = System.nanoTime();
+            long total = 0;
+            boolean archiveFailed = false;
+            if (visitArchiveService.isEnabled()) {
+                try {
+                    visitArchiveService.archiveClosedDays();
+                } catch (Exception e) {
+                    archiveFailed = true;
+                    System.err.println("访问记录归档失败，跳过 visit_log 清理: " + e.getMessage());
+                }
+            }
+            List<Map<String, Object>> tables = new ArrayList<>();
+            for (Target t : targets()) {
+                Map<String, Object> r = new LinkedHashMap<>();
+                r.put("table", t.table());
+                r.put("retentionDays", t.days());
+                if (archiveFailed && "visit_log".equals(t.table())) {
+                    r.put("purged", 0L);
+                    r.put("skipped", "归档失败");
+                    tables.add(r);
+                    continue;
+                }
+                if (t.days() <= 0) {
+                    r.put("purged", 0L);
+                    tables.add(r);
+                    continue;
+                }
+                long tableStart = System.nanoTime();
+                long[] result = purgeTable(t);
+                total += result[0];
+                r.put("purged", result[0]);
+                r.put("chunks", result[1]);
+                r.put("millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - tableStart));
+                tables.add(r);
+            }
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("lastRunAt", System.currentTimeMillis());
+            m.put("millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            m.put("purged", total);
+            m.put("tables", tables);
+            lastRun = m;
+            return m;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> m = new LinkedHashMap<>(lastRun);
+        m.put("running", running.get());
+        m.put("chunkSize", chunkSize());
+        return m;
+    }
+
+    /** @return {删除行数, 分片数} */
+    private long[] purgeTable(Target t) {
+        Object cutoff = t.cutoff();
+        String deleteSql = "DELETE FROM " + t.table() + " WHERE rowid BETWEEN ? AND ? AND " + t.column() + " < ?";
+        String remainSql = "SELECT COUNT(*) FROM " + t.table() + " WHERE rowid BETWEEN ? AND ?";
+        String nextSql = "SELECT MIN(rowid) FROM " + t.table() + " WHERE rowid > ?";
+        long upper = Long.MAX_VALUE;
+        if (!t.appendOnly()) {
+            Long max = jdbcTemplate.queryForObject("SELECT MAX(rowid) FROM " + t.table()
+                    + " WHERE " + t.column() + " < ?", Long.class, cutoff);
+            if (max == null) {
+                return new long[]{0, 0};
+            }
+            upper = max;
+        }
+        int chunk = chunkSize();
+        long purged = 0;
+        long chunks = 0;
+        Long lo = jdbcTemplate.queryForObject(nextSql, Long.class, Long.MIN_VALUE);
+        while (lo != null && lo <= upper) {
+            long from = lo;
+            long to = Math.min(from + chunk - 1, upper);
+            Supplier<long[]> step = () -> new long[]{
+                    jdbcTemplate.update(deleteSql, from, to, cutoff),
+                    t.appendOnly() ? jdbcTemplate.queryForObject(remainSql, Long.class, from, to) : 0
+            };
+            long[] r = t.ingestTable() ? visitIngestService.runExclusive(step) : step.get();
+            purged += r[0];
+            chunks++;
+            if (r[1] > 0 || to == upper) {
+                break;
+            }
+            pause();
+            lo = jdbcTemplate.queryForObject(nextSql, Long.class, to);
+        }
+        return new long[]{purged, chunks};
+    }
+
+    private int chunkSize() {
+        return Math.max(100, config.getChunkSize());
+    }
+
+    private void pause() {
+        if (config.getPauseMs() > 0) {
+            try {
+                Thread.sleep(config.getPauseMs());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.wxhm.service;
+
+import com.wxhm.entity.VisitDailyRollup;
+import com.wxhm.repository.VisitDailyRollupRepository;
+import com.wxhm.util.HyperLogLog;
+import com.wxhm.util.IpCodec;
+import com.wxhm.util.PlatformUtils;
+import jakarta.annotation.PostConstruct;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * visit_daily_rollup 维护：写线程随批次增量累加 (群, 日, 平台) 的 PV、问卷点击、UV 草图与 24 小时 PV / 重复访问桶并 upsert，
+ * 统计只需按日期区间读一次汇总表；{@link #rebuild} 可从 visit_log / survey_click_log 原始记录回填。
+ * <p>
+ * 内存中的活跃汇总只由访问日志写线程（或 {@link VisitIngestService#runExclusive} 内）访问，无需额外加锁。
+ * 批次在副本上累加，事务提交后才替换活跃汇总；批次回滚时活跃汇总保持提交前的值，不会把丢弃的增量带进下一批。
+ */
+@Service
+public class RollupService implements VisitBatchListener {
+
+    private static final String UPDATE_SQL = """
+            UPDATE visit_daily_rollup SET pv = ?, repeat_pv = ?, survey_clicks = ?, uv_sketch = ?, hourly_pv = ?,
+                hourly_repeat_pv = ?, updated_at = ?
+            WHERE group_name = ? AND date = ? AND platform = ?
+            """;
+    private static final String INSERT_SQL = """
+            INSERT INTO visit_daily_rollup (group_name, date, platform, pv, repeat_pv, survey_clicks, uv_sketch, hourly_pv,
+                hourly_repeat_pv, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+    public static final int HOURS = 24;
+
+    private final VisitDailyRollupRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final GroupDictionaryService groupDictionaryService;
+
+    private final Map<Key, Acc> active = new HashMap<>();
+
+    public RollupService(VisitDailyRollupRepository repository, JdbcTemplate jdbcTemplate,
+                         TransactionTemplate transactionTemplate, GroupDictionaryService groupDictionaryService) {
+        this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.groupDictionaryService = groupDictionaryService;
+    }
+
+    public record Key(String groupName, String date, String platform) {
+    }
+
+    private static final class Acc {
+        long pv;
+        long repeats;
+        long surveyClicks;
+        HyperLogLog uv = new HyperLogLog();
+        long[] hours = new long[HOURS];
+        /** 重复访问的小时桶：重复访问没有原始记录，与 hours 分开保存，重建时原样沿用 */
+        long[] repeatHours = new long[HOURS];
+
+        Acc copy() {
+            Acc c = new Acc();
+            c.pv = pv;
+            c.repeats = repeats;
+            c.surveyClicks = surveyClicks;
+            c.uv = uv.copy();
+            c.hours = hours.clone();
+            c.repeatHours = repeatHours.clone();
+            return c;
+        }
+    }
+
+    /** 写线程启动前，为原始记录中存在但尚无汇总（或汇总缺少小时桶）的日期补建汇总 */
+    @PostConstruct
+    void backfillMissing() {
+        SortedSet<String> rawDates = datesOf(jdbcTemplate.queryForList(
+                "SELECT DISTINCT day FROM visit_log UNION SELECT DISTINCT day FROM survey_click_log", Long.class));
+        Set<String> stale = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT DISTINCT date FROM visit_daily_rollup WHERE hourly_pv IS NULL AND pv > 0", String.class));
+        Set<String> rolled = new HashSet<>(jdbcTemplate.queryForList("SELECT DISTINCT date FROM visit_daily_rollup", String.class));
+        rawDates.removeIf(d -> rolled.contains(d) && !stale.contains(d));
+        if (!rawDates.isEmpty()) {
+            rebuildDates(rawDates);
+        }
+    }
+
+    @Override
+    public void onBatch(List<VisitEvent> batch) {
+        Map<Key, Acc> working = new HashMap<>();
+        for (VisitEvent e : batch) {
+            Key key = new Key(e.groupName(), e.date(), platformOf(e.platform()));
+            Acc acc = working.get(key);
+            if (acc == null) {
+                Acc current = active.get(key);
+                acc = current != null ? current.copy() : load(key);
+                working.put(key, acc);
+            }
+            if (e.isVisit()) {
+                acc.pv += e.weight();
+                acc.uv.add(e.ip());
+                acc.hours[e.createdAt().getHour()] += e.weight();
+            } else if (e.isRepeat()) {
+                // 重复访问的 IP 也计入 UV 草图，判重误判时 UV 不受影响
+                acc.repeats += e.weight();
+                acc.repeatHours[e.createdAt().getHour()] += e.weight();
+                acc.uv.add(e.ip());
+            } else {
+                acc.surveyClicks += e.weight();
+            }
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (Map.Entry<Key, Acc> entry : working.entrySet()) {
+            upsert(entry.getKey(), entry.getValue(), now);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // 提交回调仍在写线程上执行
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(working);
+                }
+            });
+        } else {
+            publish(working);
+        }
+    }
+
+    private void publish(Map<Key, Acc> working) {
+        active.putAll(working);
+        String yesterday = LocalDate.now().minusDays(1).toString();
+        active.keySet().removeIf(k -> k.date().compareTo(yesterday) < 0);
+    }
+
+    private Acc load(Key key) {
+        Acc acc = new Acc();
+        repository.findByGroupNameAndDateAndPlatform(key.groupName(), key.date(), key.platform()).ifPresent(r -> {
+            acc.pv = r.getPv();
+            acc.repeats = r.getRepeatPv();
+            acc.surveyClicks = r.getSurveyClicks();
+            acc.uv = HyperLogLog.fromBytes(r.getUvSketch());
+            acc.hours = decodeHours(r.getHourlyPv());
+            acc.repeatHours = decodeHours(r.getHourlyRepeatPv());
+        });
+        return acc;
+    }
+
+    /** SQLite 方言不会建出唯一索引，这里用先 UPDATE 后 INSERT 实现 upsert（写入方唯一，无并发冲突） */
+    private void upsert(Key k, Acc acc, Timestamp now) {
+        byte[] sketch = acc.uv.toBytes();
+        byte[] hours = encodeHours(acc.hours);
+        byte[] repeatHours = encodeHours(acc.repeatHours);
+        if (jdbcTemplate.update(UPDATE_SQL, acc.pv, acc.repeats, acc.surveyClicks, sketch, hours, repeatHours, now,
+                k.groupName(), k.date(), k.platform()) == 0) {
+            jdbcTemplate.update(INSERT_SQL, k.groupName(), k.date(), k.platform(),
+                    acc.pv, acc.repeats, acc.surveyClicks, sketch, hours, repeatHours, now);
+        }
+    }
+
+    /**
+     * 从原始记录重建日期区间内的汇总（仅重建仍有原始记录的日期，已过保留期的历史汇总保持不变）。
+     * 重复访问没有原始记录，其计数与小时桶沿用重建前汇总中的 repeat_pv、hourly_repeat_pv。
+     * 需在 {@link VisitIngestService#runExclusive} 中调用，避免与写线程交错。
+     */
+    public Map<String, Object> rebuild(LocalDate from, LocalDate to) {
+        SortedSet<String> dates = datesOf(jdbcTemplate.queryForList("""
+                SELECT DISTINCT day FROM visit_log WHERE day BETWEEN ? AND ?
+                UNION SELECT DISTINCT day FROM survey_click_log WHERE day BETWEEN ? AND ?
+                """, Long.class, from.toEpochDay(), to.toEpochDay(), from.toEpochDay(), to.toEpochDay()));
+        long start = System.currentTimeMillis();
+        int rows = dates.isEmpty() ? 0 : rebuildDates(dates);
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("dates", new ArrayList<>(dates));
+        m.put("rows", rows);
+        m.put("millis", System.currentTimeMillis() - start);
+        return m;
+    }
+
+    private int rebuildDates(SortedSet<String> dates) {
+        long first = LocalDate.parse(dates.first()).toEpochDay();
+        long last = LocalDate.parse(dates.last()).toEpochDay();
+        Map<Key, Acc> built = new HashMap<>();
+        jdbcTemplate.query("""
+                SELECT group_id, day, platform, ip, created_at, COALESCE(weight, 1) FROM visit_log
+                WHERE day BETWEEN ? AND ?
+                """, rs -> {
+            Key key = keyOf(rs.getInt(1), rs.getLong(2), rs.getInt(3), dates);
+            if (key == null) return;
+            Acc acc = built.computeIfAbsent(key, k -> new Acc());
+            long weight = rs.getLong(6);
+            acc.pv += weight;
+            acc.uv.add(IpCodec.decode(rs.getBytes(4)));
+            Timestamp createdAt = rs.getTimestamp(5);
+            if (createdAt != null) {
+                acc.hours[createdAt.toLocalDateTime().getHour()] += weight;
+            }
+        }, first, last);
+        jdbcTemplate.query("""
+                SELECT group_id, day, platform, SUM(COALESCE(weight, 1)) FROM survey_click_log
+                WHERE day BETWEEN ? AND ? GROUP BY group_id, day, platform
+                """, rs -> {
+            Key key = keyOf(rs.getInt(1), rs.getLong(2), rs.getInt(3), dates);
+            if (key == null) return;
+            built.computeIfAbsent(key, k -> new Acc()).surveyClicks += rs.getLong(4);
+        }, first, last);
+
+        jdbcTemplate.query("""
+                SELECT group_name, date, platform, repeat_pv, hourly_repeat_pv FROM visit_daily_rollup
+                WHERE date BETWEEN ? AND ? AND repeat_pv > 0
+                """, rs -> {
+            if (!dates.contains(rs.getString(2))) return;
+            Acc acc = built.computeIfAbsent(new Key(rs.getString(1), rs.getString(2), rs.getString(3)), k -> new Acc());
+            acc.repeats += rs.getLong(4);
+            long[] repeatHours = decodeHours(rs.getBytes(5));
+            for (int h = 0; h < HOURS; h++) {
+                acc.repeatHours[h] += repeatHours[h];
+            }
+        }, dates.first(), dates.last());
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        transactionTemplate.executeWithoutResult(status -> {
+            for (String d : dates) {
+                jdbcTemplate.update("DELETE FROM visit_daily_rollup WHERE date = ?", d);
+            }
+            jdbcTemplate.batchUpdate(INSERT_SQL, built.entrySet().stream()
+                    .map(e -> new Object[]{e.getKey().groupName(), e.getKey().date(), e.getKey().platform(),
+                            e.getValue().pv, e.getValue().repeats, e.getValue().surveyClicks, e.getValue().uv.toBytes(),
+                            encodeHours(e.getValue().hours), encodeHours(e.getValue().repeatHours), now})
+                    .toList());
+        });
+        active.keySet().removeIf(k -> dates.contains(k.date()));
+        return built.size();
+    }
+
+    /** 单次区间查询读取汇总行 */
+    public List<VisitDailyRollup> findRange(String fromDate, String toDate) {
+        return repository.findAllByDateBetween(fromDate, toDate);
+    }
+
+    /** 24 个小时桶按 varint 顺序编码（多数桶为 0，通常只有几十字节） */
+    public static byte[] encodeHours(long[] hours) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(HOURS * 2);
+        for (int h = 0; h < HOURS; h++) {
+            long v = hours[h];
+            while ((v & ~0x7FL) != 0) {
+                out.write((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            out.write((int) v);
+        }
+        return out.toByteArray();
+    }
+
+    public static long[] decodeHours(byte[] data) {
+        long[] hours = new long[HOURS];
+        if (data == null) {
+            return hours;
+        }
+        int pos = 0;
+        for (int h = 0; h < HOURS && pos < data.length; h++) {
+            long v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0 && pos < data.length);
+            hours[h] = v;
+        }
+        return hours;
+    }
+
+    private static SortedSet<String> datesOf(List<Long> epochDays) {
+        SortedSet<String> set = new TreeSet<>();
+        for (Long d : epochDays) {
+            if (d != null) set.add(LocalDate.ofEpochDay(d).toString());
+        }
+        return set;
+    }
+
+    /** 原始记录的整型列还原为汇总键；群名未登记或日期不在重建范围内时返回 null */
+    private Key keyOf(int groupId, long epochDay, int platform, Set<String> dates) {
+        String group = groupDictionaryService.nameOf(groupId);
+        String date = LocalDate.ofEpochDay(epochDay).toString();
+        if (group == null || !dates.contains(date)) return null;
+        return new Key(group, date, PlatformUtils.nameOf(platform));
+    }
+
+    /** 与落库的平台代码保持一致（未知平台归入 Other），增量累加与按原始记录重建得到相同的键 */
+    private static String platformOf(String platform) {
+        return PlatformUtils.nameOf(PlatformUtils.code(platform));
+    }
+}
@@ -0,0 +1,36 @@
+package com.wxhm.service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * 统计查询条件：日期区间（含两端）、群过滤（空表示全部群）、按区间 PV 取前 N 个群、UV 计算模式
+ */
+public record StatsQuery(LocalDate from, LocalDate to, List<String> groups, Integer limit, boolean approximateUv) {
+
+    /** 单次查询允许的最大天数 */
+    public static final int MAX_DAYS = 366;
+
+    public StatsQuery {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("日期区间不能为空");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("开始日期不能晚于结束日期");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_DAYS) {
+            throw new IllegalArgumentException("日期区间最多 " + MAX_DAYS + " 天");
+        }
+        if (limit != null && limit <= 0) {
+            throw new IllegalArgumentException("limit 必须为正整数");
+        }
+        groups = groups == null ? List.of() : groups.stream().filter(g -> g != null && !g.isBlank()).toList();
+    }
+
+    /** 截至今天的最近 days 天，全部群 */
+    public static StatsQuery lastDays(int days, boolean approximateUv) {
+        LocalDate today = LocalDate.now();
+        return new StatsQuery(today.minusDays(days - 1L), today, List.of(), null, approximateUv);
+    }
+}
@@ -1,71 +1,294 @@
 package com.wxhm.service;
 
 import com.wxhm.config.WxHmProperties;
-import com.wxhm.repository.SurveyClickLogRepository;
+import com.wxhm.entity.VisitDailyRollup;
 import com.wxhm.repository.VisitLogRepository;
+import com.wxhm.util.HyperLogLog;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 /**
- * 统计服务：7 日 PV/UV 趋势、今日设备占比
+ * 统计服务：按日期区间的 PV/UV/问卷点击趋势、区间末日设备占比（默认近 7 日、全部群）。
+ * PV、问卷点击与设备分布读自 visit_daily_rollup；UV 默认对仍有原始记录的日期精确计算，
+ * 近似模式下改用汇总中的 HyperLogLog 草图，并给出区间合并去重 UV。
  */
 @Service
 public class StatsService {
 
+    private static final List<String> WEEKDAYS = List.of("周一", "周二", "周三", "周四", "周五", "周六", "周日");
+
     private final VisitLogRepository visitLogRepository;
-    private final SurveyClickLogRepository surveyClickLogRepository;
     private final QrService qrService;
+    private final RollupService rollupService;
+    private final GroupDictionaryService groupDictionaryService;
     private final WxHmProperties properties;
 
-    public StatsService(VisitLogRepository visitLogRepository, SurveyClickLogRepository surveyClickLogRepository,
-                        QrService qrService, WxHmProperties properties) {
+    public StatsService(VisitLogRepository visitLogRepository, QrService qrService, RollupService rollupService,
+                        GroupDictionaryService groupDictionaryService, WxHmProperties properties) {
         this.visitLogRepository = visitLogRepository;
-        this.surveyClickLogRepository = surveyClickLogRepository;
         this.qrService = qrService;
+        this.rollupService = rollupService;
+        this.groupDictionaryService = groupDictionaryService;
         this.properties = properties;
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public Map<String, Map<String, Object>> getStatsData() {
-        String today = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
+        return getStatsData(StatsQuery.lastDays(7, false));
+    }
+
+    /**
+     * 按查询条件一次性汇总所有群：汇总表做一次区间查询；精确 UV 模式再对原始记录做一次
+     * GROUP BY group_id, day 扫描（含问卷点击），对仍有原始记录的日期以精确值覆盖汇总值。
+     * 趋势中 pv 为原始 PV（含判重窗口内的重复访问），dedupPv 为去重后落库的 PV。
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Map<String, Object>> getStatsData(StatsQuery query) {
         List<String> dates = new ArrayList<>();
-        for (int i = 6; i >= 0; i--) {
-            dates.add(LocalDate.now().minusDays(i).format(DateTimeFormatter.ISO_LOCAL_DATE));
+        for (LocalDate d = query.from(); !d.isAfter(query.to()); d = d.plusDays(1)) {
+            dates.add(d.format(DateTimeFormatter.ISO_LOCAL_DATE));
+        }
+        String fromDate = dates.get(0);
+        String toDate = dates.get(dates.size() - 1);
+
+        Set<String> groupFilter = query.groups().isEmpty() ? null : new HashSet<>(query.groups());
+        Map<String, Map<String, DayAgg>> byGroup = new HashMap<>();
+        Map<String, Map<String, Long>> lastDayPlatforms = new HashMap<>();
+        for (VisitDailyRollup r : rollupService.findRange(fromDate, toDate)) {
+            if (groupFilter != null && !groupFilter.contains(r.getGroupName())) continue;
+            DayAgg agg = byGroup.computeIfAbsent(r.getGroupName(), k -> new HashMap<>())
+                    .computeIfAbsent(r.getDate(), k -> new DayAgg());
+            agg.pv += r.getPv();
+            agg.repeats += r.getRepeatPv();
+            agg.surveyClicks += r.getSurveyClicks();
+            agg.uv.merge(HyperLogLog.fromBytes(r.getUvSketch()));
+            if (toDate.equals(r.getDate()) && r.getPv() + r.getRepeatPv() > 0) {
+                lastDayPlatforms.computeIfAbsent(r.getGroupName(), k -> new LinkedHashMap<>())
+                        .merge(r.getPlatform(), r.getPv() + r.getRepeatPv(), Long::sum);
+            }
+        }
+        if (!query.approximateUv()) {
+            long fromDay = query.from().toEpochDay();
+            long toDay = query.to().toEpochDay();
+            Set<Integer> groupIds = groupFilter == null ? null : groupDictionaryService.findAll(groupFilter);
+            List<Object[]> rows = groupIds == null
+                    ? visitLogRepository.aggregateByGroupAndDay(fromDay, toDay)
+                    : groupIds.isEmpty() ? List.of() : visitLogRepository.aggregateByGroupAndDay(fromDay, toDay, groupIds);
+            for (Object[] row : rows) {
+                String groupName = groupDictionaryService.nameOf(((Number) row[0]).intValue());
+                if (groupName == null) continue;
+                DayAgg agg = byGroup.computeIfAbsent(groupName, k -> new HashMap<>())
+                        .computeIfAbsent(LocalDate.ofEpochDay(((Number) row[1]).longValue()).toString(), k -> new DayAgg());
+                agg.pv = ((Number) row[2]).longValue();
+                agg.exactUv = ((Number) row[3]).longValue();
+                agg.surveyClicks = ((Number) row[4]).longValue();
+            }
         }
 
-        String beforeDate = LocalDate.now().minusDays(7).format(DateTimeFormatter.ISO_LOCAL_DATE);
-        visitLogRepository.deleteByDateBefore(beforeDate);
-        surveyClickLogRepository.deleteByDateBefore(beforeDate);
+        List<String> groups = groupFilter != null ? query.groups() : qrService.listGroups();
+        if (query.limit() != null && groups.size() > query.limit()) {
+            groups = groups.stream()
+                    .sorted(Comparator.comparingLong((String g) -> totalPv(byGroup.get(g))).reversed()
+                            .thenComparing(Comparator.naturalOrder()))
+                    .limit(query.limit())
+                    .toList();
+        }
 
         Map<String, Map<String, Object>> result = new LinkedHashMap<>();
-        for (String group : qrService.listGroups()) {
-            List<Map<String, Object>> trend = new ArrayList<>();
+        for (String group : groups) {
+            Map<String, DayAgg> days = byGroup.getOrDefault(group, Map.of());
+            List<Map<String, Object>> trend = new ArrayList<>(dates.size());
+            HyperLogLog groupUv = new HyperLogLog();
             for (String d : dates) {
-                long pv = visitLogRepository.countByGroupNameAndDate(group, d);
-                long uv = visitLogRepository.countDistinctIpByGroupNameAndDate(group, d);
-                long surveyClicks = surveyClickLogRepository.countByGroupNameAndDate(group, d);
-                trend.add(Map.of("date", d, "pv", pv, "uv", uv, "surveyClicks", surveyClicks));
+                DayAgg agg = days.getOrDefault(d, DayAgg.EMPTY);
+                long uv = !query.approximateUv() && agg.exactUv >= 0 ? agg.exactUv : agg.uv.estimate();
+                groupUv.merge(agg.uv);
+                trend.add(Map.of("date", d, "pv", agg.pv + agg.repeats, "dedupPv", agg.pv, "uv", uv,
+                        "surveyClicks", agg.surveyClicks));
             }
 
-            List<Map<String, Object>> pie = visitLogRepository
-                    .countByGroupNameAndDateGroupByPlatform(group, today)
+            List<Map<String, Object>> pie = lastDayPlatforms.getOrDefault(group, Map.of()).entrySet()
                     .stream()
-                    .map(row -> Map.<String, Object>of("name", row[0], "value", row[1]))
+                    .map(e -> Map.<String, Object>of("name", e.getKey(), "value", e.getValue()))
                     .collect(Collectors.toList());
             if (pie.isEmpty()) {
                 pie.add(Map.of("name", "无数据", "value", 0));
             }
 
-            result.put(group, Map.of("trend", trend, "pie", pie));
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("trend", trend);
+            entry.put("pie", pie);
+            if (query.approximateUv()) {
+                entry.put("uvTotal", groupUv.estimate());
+            }
+            result.put(group, entry);
         }
         return result;
     }
+
+    private static long totalPv(Map<String, DayAgg> days) {
+        if (days == null) return 0;
+        long sum = 0;
+        for (DayAgg agg : days.values()) {
+            sum += agg.pv + agg.repeats;
+        }
+        return sum;
+    }
+
+    /**
+     * 小时趋势：各群每日 24 个小时桶的 PV（含判重窗口内的重复访问）及区间合计，只读汇总表中的小时桶，不扫描原始记录。
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getHourlyTrend(StatsQuery query) {
+        String fromDate = query.from().format(DateTimeFormatter.ISO_LOCAL_DATE);
+        String toDate = query.to().format(DateTimeFormatter.ISO_LOCAL_DATE);
+        Set<String> groupFilter = query.groups().isEmpty() ? null : new HashSet<>(query.groups());
+        Map<String, Map<String, long[]>> byGroup = new HashMap<>();
+        for (VisitDailyRollup r : rollupService.findRange(fromDate, toDate)) {
+            if (groupFilter != null && !groupFilter.contains(r.getGroupName())) continue;
+            addHours(byGroup.computeIfAbsent(r.getGroupName(), k -> new TreeMap<>())
+                    .computeIfAbsent(r.getDate(), k -> new long[RollupService.HOURS]), r);
+        }
+
+        Map<String, long[]> groupTotals = new HashMap<>();
+        byGroup.forEach((g, days) -> {
+            long[] total = new long[RollupService.HOURS];
+            days.values().forEach(h -> addAll(total, h));
+            groupTotals.put(g, total);
+        });
+        List<String> groups = groupFilter != null ? query.groups() : qrService.listGroups();
+        if (query.limit() != null && groups.size() > query.limit()) {
+            groups = groups.stream()
+                    .sorted(Comparator.comparingLong((String g) -> sum(groupTotals.get(g))).reversed()
+                            .thenComparing(Comparator.naturalOrder()))
+                    .limit(query.limit())
+                    .toList();
+        }
+
+        long[] allTotal = new long[RollupService.HOURS];
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (String group : groups) {
+            List<Map<String, Object>> days = new ArrayList<>();
+            byGroup.getOrDefault(group, Map.of())
+                    .forEach((date, hours) -> days.add(Map.of("date", date, "hours", hours)));
+            long[] total = groupTotals.getOrDefault(group, new long[RollupService.HOURS]);
+            addAll(allTotal, total);
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("groupName", group);
+            item.put("days", days);
+            item.put("total", total);
+            list.add(item);
+        }
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("from", fromDate);
+        m.put("to", toDate);
+        m.put("groups", list);
+        m.put("total", allTotal);
+        return m;
+    }
+
+    /**
+     * 星期 × 小时热力图：区间内所选群（默认全部）按星期一至星期日、0-23 时累计 PV（含重复访问）；
+     * dayCounts 为区间内各星期出现的天数，便于前端换算日均值。
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getHeatmap(StatsQuery query) {
+        String fromDate = query.from().format(DateTimeFormatter.ISO_LOCAL_DATE);
+        String toDate = query.to().format(DateTimeFormatter.ISO_LOCAL_DATE);
+        Set<String> groupFilter = query.groups().isEmpty() ? null : new HashSet<>(query.groups());
+        long[][] matrix = new long[7][RollupService.HOURS];
+        long max = 0;
+        for (VisitDailyRollup r : rollupService.findRange(fromDate, toDate)) {
+            if (groupFilter != null && !groupFilter.contains(r.getGroupName())) continue;
+            int weekday = LocalDate.parse(r.getDate()).getDayOfWeek().getValue() - 1;
+            addHours(matrix[weekday], r);
+        }
+        for (long[] row : matrix) {
+            for (long v : row) max = Math.max(max, v);
+        }
+        int[] dayCounts = new int[7];
+        for (LocalDate d = query.from(); !d.isAfter(query.to()); d = d.plusDays(1)) {
+            dayCounts[d.getDayOfWeek().getValue() - 1]++;
+        }
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("from", fromDate);
+        m.put("to", toDate);
+        m.put("groups", query.groups());
+        m.put("weekdays", WEEKDAYS);
+        m.put("matrix", matrix);
+        m.put("dayCounts", dayCounts);
+        m.put("max", max);
+        return m;
+    }
+
+    /** 累加汇总行的小时桶：PV 与重复访问，与趋势中的 pv + 重复访问口径一致 */
+    private static void addHours(long[] target, VisitDailyRollup r) {
+        if (r.getHourlyPv() != null) {
+            addAll(target, RollupService.decodeHours(r.getHourlyPv()));
+        }
+        if (r.getHourlyRepeatPv() != null) {
+            addAll(target, RollupService.decodeHours(r.getHourlyRepeatPv()));
+        }
+    }
+
+    private static void addAll(long[] target, long[] values) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] += values[i];
+        }
+    }
+
+    private static long sum(long[] values) {
+        if (values == null) return 0;
+        long sum = 0;
+        for (long v : values) sum += v;
+        return sum;
+    }
+
+    /**
+     * 近似去重 UV 汇总：各群日期区间内合并 UV，以及所有群合并后的总 UV（同一 IP 跨群只计一次）。
+     */
+    public Map<String, Object> getUvSummary(LocalDate from, LocalDate to) {
+        Map<String, HyperLogLog> perGroup = new TreeMap<>();
+        HyperLogLog all = new HyperLogLog();
+        for (VisitDailyRollup r : rollupService.findRange(from.format(DateTimeFormatter.ISO_LOCAL_DATE),
+                to.format(DateTimeFormatter.ISO_LOCAL_DATE))) {
+            HyperLogLog hll = HyperLogLog.fromBytes(r.getUvSketch());
+            perGroup.computeIfAbsent(r.getGroupName(), k -> new HyperLogLog()).merge(hll);
+            all.merge(hll);
+        }
+        Map<String, Long> groups = new LinkedHashMap<>();
+        perGroup.forEach((g, hll) -> groups.put(g, hll.estimate()));
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("from", from.toString());
+        m.put("to", to.toString());
+        m.put("groups", groups);
+        m.put("allGroupsUv", all.estimate());
+        return m;
+    }
+
+    private static final class DayAgg {
+        static final DayAgg EMPTY = new DayAgg();
+
+        /** 落库的（去重后）访问数 */
+        long pv;
+        /** 判重窗口内的重复访问数，原始 PV = pv + repeats */
+        long repeats;
+        long surveyClicks;
+        /** 原始记录精确去重 UV，-1 表示该日已无原始记录 */
+        long exactUv = -1;
+        final HyperLogLog uv = new HyperLogLog();
+    }
 }
@@ -1,27 +1,20 @@
 package com.wxhm.service;
 
-import com.wxhm.entity.SurveyClickLog;
-import com.wxhm.repository.SurveyClickLogRepository;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.time.LocalDateTime;
 
 @Service
 public class SurveyClickService {
 
-    private final SurveyClickLogRepository surveyClickLogRepository;
+    private final VisitIngestService visitIngestService;
 
-    public SurveyClickService(SurveyClickLogRepository surveyClickLogRepository) {
-        this.surveyClickLogRepository = surveyClickLogRepository;
+    public SurveyClickService(VisitIngestService visitIngestService) {
+        this.visitIngestService = visitIngestService;
     }
 
+    /** 点击记录与访问日志共用写入队列，批量写入 survey_click_log 并计入日汇总 */
     public void logClick(String groupName, String ip, String platform) {
-        SurveyClickLog log = new SurveyClickLog();
-        log.setGroupName(groupName);
-        log.setDate(LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE));
-        log.setIp(ip);
-        log.setPlatform(platform);
-        surveyClickLogRepository.save(log);
+        visitIngestService.submit(VisitEvent.surveyClick(groupName, ip, platform, LocalDateTime.now()));
     }
 }
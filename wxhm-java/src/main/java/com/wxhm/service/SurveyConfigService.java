@@ -6,44 +6,64 @@ import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * 问卷配置；全局配置读取后缓存在内存，保存 / 删除全局配置时版本号加一并失效缓存
+ */
 @Service
 public class SurveyConfigService {
     public static final String GLOBAL_KEY = "__GLOBAL__";
     public static final String DEFAULT_BUTTON_TEXT = "填写问卷";
 
     private final SurveyConfigRepository repository;
+    private final AtomicLong version = new AtomicLong();
+    private volatile Global global;
+
+    /** 全局问卷配置快照 */
+    public record Global(String url, String buttonText, long version) {
+    }
 
     public SurveyConfigService(SurveyConfigRepository repository) {
         this.repository = repository;
     }
 
     public String resolveSurveyUrl(String groupName) {
-        return repository.findByGroupName(GLOBAL_KEY)
-                .map(SurveyConfig::getSurveyUrl)
-                .map(this::normalizeUrl)
-                .orElse(null);
+        String url = global().url();
+        return url.isEmpty() ? null : url;
     }
 
     public String getGlobalUrl() {
-        return repository.findByGroupName(GLOBAL_KEY)
-                .map(SurveyConfig::getSurveyUrl)
-                .map(this::normalizeUrl)
-                .orElse("");
+        return global().url();
     }
 
     public String resolveButtonText(String groupName) {
-        return repository.findByGroupName(GLOBAL_KEY)
-                .map(SurveyConfig::getButtonText)
-                .map(this::normalizeText)
-                .orElse(DEFAULT_BUTTON_TEXT);
+        return global().buttonText();
     }
 
     public String getGlobalButtonText() {
-        return repository.findByGroupName(GLOBAL_KEY)
-                .map(SurveyConfig::getButtonText)
-                .map(this::normalizeText)
-                .orElse(DEFAULT_BUTTON_TEXT);
+        return global().buttonText();
+    }
+
+    /** 当前全局配置（url 为空串表示未配置），首次读取或失效后查库一次 */
+    public Global global() {
+        Global g = global;
+        if (g != null) {
+            return g;
+        }
+        long v = version.get();
+        var row = repository.findByGroupName(GLOBAL_KEY);
+        g = new Global(
+                row.map(SurveyConfig::getSurveyUrl).map(this::normalizeUrl).orElse(""),
+                row.map(SurveyConfig::getButtonText).map(this::normalizeText).orElse(DEFAULT_BUTTON_TEXT),
+                v);
+        synchronized (this) {
+            // 读库期间配置被修改则不写入缓存，下次重新读取
+            if (version.get() == v) {
+                global = g;
+            }
+        }
+        return g;
     }
 
     public void saveGlobalUrl(String surveyUrl) {
@@ -64,6 +84,7 @@ public class SurveyConfigService {
 
     public void deleteGroupUrl(String groupName) {
         repository.findByGroupName(groupName).ifPresent(repository::delete);
+        invalidate(groupName);
     }
 
     public List<SurveyConfig> listGroupOverrides() {
@@ -77,6 +98,7 @@ public class SurveyConfigService {
         String normalizedText = normalizeText(buttonText);
         if (normalized == null) {
             repository.findByGroupName(groupName).ifPresent(repository::delete);
+            invalidate(groupName);
             return;
         }
         SurveyConfig row = repository.findByGroupName(groupName).orElseGet(SurveyConfig::new);
@@ -84,6 +106,14 @@ public class SurveyConfigService {
         row.setSurveyUrl(normalized);
         row.setButtonText(normalizedText);
         repository.save(row);
+        invalidate(groupName);
+    }
+
+    private synchronized void invalidate(String groupName) {
+        if (GLOBAL_KEY.equals(groupName)) {
+            version.incrementAndGet();
+            global = null;
+        }
     }
 
     private String normalizeUrl(String surveyUrl) {
@@ -0,0 +1,340 @@
+package com.wxhm.service;
+
+import com.wxhm.config.WxHmProperties;
+import com.wxhm.entity.VisitDailyRollup;
+import com.wxhm.util.HyperLogLog;
+import com.wxhm.util.PlatformUtils;
+import com.wxhm.util.VisitArchiveFile;
+import jakarta.annotation.PreDestroy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * 访问记录归档：把已结束的日期从 visit_log 写入按日列式文件（见 {@link VisitArchiveFile}），
+ * 原始记录过保留期被清理后长期历史仍可查询。长区间统计按文件并行扫描（内存映射读取），
+ * 尚未归档的日期（如当天）回退到日汇总。
+ */
+@Service
+public class VisitArchiveService {
+
+    private static final String FILE_PREFIX = "visits-";
+    private static final String FILE_SUFFIX = ".wxa";
+
+    private final ReentrantLock archiveLock = new ReentrantLock();
+    private final JdbcTemplate jdbcTemplate;
+    private final RollupService rollupService;
+    private final GroupDictionaryService groupDictionaryService;
+    private final WxHmProperties properties;
+    private final ForkJoinPool scanPool;
+
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    public VisitArchiveService(JdbcTemplate jdbcTemplate, RollupService rollupService,
+                               GroupDictionaryService groupDictionaryService, WxHmProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.rollupService = rollupService;
+        this.groupDictionaryService = groupDictionaryService;
+        this.properties = properties;
+        int parallelism = properties.getArchive().getParallelism();
+        this.scanPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scanPool.shutdown();
+    }
+
+    public boolean isEnabled() {
+        return properties.getArchive().isEnabled();
+    }
+
+    @Scheduled(cron = "${wxhm.archive.cron:0 30 0 * * *}")
+    void scheduledArchive() {
+        try {
+            archiveClosedDays();
+        } catch (Exception e) {
+            System.err.println("访问记录归档失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 为 visit_log 中最早日期至昨天之间尚无归档文件的日期生成归档（无记录的日期写空文件作标记）。
+     */
+    public Map<String, Object> archiveClosedDays() {
+        // ReentrantLock 而非 synchronized：归档期间有文件与数据库 IO，避免虚拟线程占住载体线程
+        archiveLock.lock();
+        try {
+            return doArchiveClosedDays();
+        } finally {
+            archiveLock.unlock();
+        }
+    }
+
+    private Map<String, Object> doArchiveClosedDays() {
+        if (!isEnabled()) {
+            return Map.of("enabled", false);
+        }
+        long start = System.currentTimeMillis();
+        List<String> archived = new ArrayList<>();
+        long rows = 0;
+        long bytes = 0;
+        List<Long> oldest = jdbcTemplate.queryForList("SELECT day FROM visit_log ORDER BY rowid LIMIT 1", Long.class);
+        if (!oldest.isEmpty() && oldest.get(0) != null) {
+            LocalDate yesterday = LocalDate.now().minusDays(1);
+            for (LocalDate d = LocalDate.ofEpochDay(oldest.get(0)); !d.isAfter(yesterday); d = d.plusDays(1)) {
+                if (Files.exists(fileOf(d))) continue;
+                long[] r = archiveDay(d);
+                archived.add(d.toString());
+                rows += r[0];
+                bytes += r[1];
+            }
+        }
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("lastRunAt", System.currentTimeMillis());
+        m.put("archivedDates", archived);
+        m.put("rows", rows);
+        m.put("bytes", bytes);
+        m.put("millis", System.currentTimeMillis() - start);
+        lastRun = m;
+        return m;
+    }
+
+    /** 边查询边按列编码，内存只保存编码后的列数据，不为整日记录建立行对象；@return {行数, 文件字节数} */
+    private long[] archiveDay(LocalDate date) {
+        VisitArchiveFile.Writer writer = new VisitArchiveFile.Writer(fileOf(date), date.toEpochDay());
+        jdbcTemplate.query(
+                "SELECT group_id, platform, created_at, ip, COALESCE(weight, 1) FROM visit_log WHERE day = ? ORDER BY created_at",
+                rs -> {
+                    Timestamp ts = rs.getTimestamp(3);
+                    writer.add(groupDictionaryService.nameOf(rs.getInt(1)), PlatformUtils.nameOf(rs.getInt(2)),
+                            ts != null ? ts.getTime() : 0L, rs.getBytes(4), rs.getInt(5));
+                }, date.toEpochDay());
+        try {
+            long size = writer.finish();
+            return new long[]{writer.rows(), size};
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入归档失败 " + date, e);
+        }
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> m = new LinkedHashMap<>(lastRun);
+        m.put("enabled", isEnabled());
+        m.put("dir", properties.getArchiveDirPath().toString());
+        List<Path> files = listFiles();
+        long bytes = 0;
+        for (Path f : files) {
+            try {
+                bytes += Files.size(f);
+            } catch (IOException ignored) {
+                // 文件被并发替换时忽略
+            }
+        }
+        m.put("files", files.size());
+        m.put("totalBytes", bytes);
+        if (!files.isEmpty()) {
+            m.put("oldest", dateOf(files.get(0)));
+            m.put("newest", dateOf(files.get(files.size() - 1)));
+        }
+        return m;
+    }
+
+    /**
+     * 长区间趋势：已归档日期并行扫描归档文件，其余日期读日汇总，每日 PV 与 UV（HyperLogLog 估计）口径一致；
+     * 每个群另给出区间合并去重 UV（HyperLogLog 估计）。
+     */
+    public Map<String, Object> query(StatsQuery query) {
+        long start = System.currentTimeMillis();
+        Set<String> groupFilter = query.groups().isEmpty() ? null : new HashSet<>(query.groups());
+        List<LocalDate> archivedDates = new ArrayList<>();
+        Set<String> fallbackDates = new HashSet<>();
+        for (LocalDate d = query.from(); !d.isAfter(query.to()); d = d.plusDays(1)) {
+            if (Files.exists(fileOf(d))) {
+                archivedDates.add(d);
+            } else {
+                fallbackDates.add(d.toString());
+            }
+        }
+
+        Acc acc;
+        try {
+            acc = scanPool.submit(() -> archivedDates.parallelStream()
+                    .collect(() -> new Acc(groupFilter), Acc::scan, Acc::merge)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("归档扫描被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("归档扫描失败: " + e.getCause().getMessage(), e.getCause());
+        }
+        if (!fallbackDates.isEmpty()) {
+            // 同一 (群, 日) 的多个平台汇总行先合并草图再估计当日 UV
+            Map<String, Map<String, HyperLogLog>> dayUv = new HashMap<>();
+            for (VisitDailyRollup r : rollupService.findRange(query.from().toString(), query.to().toString())) {
+                if (!fallbackDates.contains(r.getDate())) continue;
+                if (groupFilter != null && !groupFilter.contains(r.getGroupName())) continue;
+                HyperLogLog hll = HyperLogLog.fromBytes(r.getUvSketch());
+                GroupAcc g = acc.group(r.getGroupName());
+                g.days.computeIfAbsent(r.getDate(), k -> new long[2])[0] += r.getPv();
+                g.pv += r.getPv();
+                g.uv.merge(hll);
+                dayUv.computeIfAbsent(r.getGroupName(), k -> new HashMap<>())
+                        .computeIfAbsent(r.getDate(), k -> new HyperLogLog()).merge(hll);
+            }
+            dayUv.forEach((group, days) -> days.forEach((date, hll) ->
+                    acc.group(group).days.get(date)[1] = hll.estimate()));
+        }
+
+        List<String> groups = groupFilter != null ? query.groups()
+                : acc.groups.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, GroupAcc> e) -> e.getValue().pv).reversed()
+                        .thenComparing(Map.Entry::getKey))
+                .map(Map.Entry::getKey)
+                .toList();
+        if (query.limit() != null && groups.size() > query.limit()) {
+            groups = groups.subList(0, query.limit());
+        }
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (String group : groups) {
+            GroupAcc g = acc.groups.getOrDefault(group, new GroupAcc());
+            List<Map<String, Object>> trend = new ArrayList<>();
+            for (LocalDate d = query.from(); !d.isAfter(query.to()); d = d.plusDays(1)) {
+                long[] day = g.days.getOrDefault(d.toString(), new long[2]);
+                trend.add(Map.of("date", d.toString(), "pv", day[0], "uv", day[1],
+                        "source", fallbackDates.contains(d.toString()) ? "rollup" : "archive"));
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("groupName", group);
+            item.put("pv", g.pv);
+            item.put("uvTotal", g.uv.estimate());
+            item.put("trend", trend);
+            list.add(item);
+        }
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("from", query.from().toString());
+        m.put("to", query.to().toString());
+        m.put("archivedDays", archivedDates.size());
+        m.put("rollupDays", fallbackDates.size());
+        m.put("groups", list);
+        m.put("millis", System.currentTimeMillis() - start);
+        return m;
+    }
+
+    private Path fileOf(LocalDate date) {
+        return properties.getArchiveDirPath().resolve(FILE_PREFIX + date + FILE_SUFFIX);
+    }
+
+    private List<Path> listFiles() {
+        Path dir = properties.getArchiveDirPath();
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> {
+                String n = p.getFileName().toString();
+                return n.startsWith(FILE_PREFIX) && n.endsWith(FILE_SUFFIX);
+            }).sorted().toList();
+        } catch (IOException e) {
+            return List.of();
+        }
+    }
+
+    private static String dateOf(Path file) {
+        String n = file.getFileName().toString();
+        return n.substring(FILE_PREFIX.length(), n.length() - FILE_SUFFIX.length());
+    }
+
+    /** 单群累计：每日 {pv, uv} 与区间 UV 草图 */
+    private static final class GroupAcc {
+        final Map<String, long[]> days = new TreeMap<>();
+        final HyperLogLog uv = new HyperLogLog();
+        long pv;
+
+        void merge(GroupAcc other) {
+            other.days.forEach((d, v) -> {
+                long[] day = days.computeIfAbsent(d, k -> new long[2]);
+                day[0] += v[0];
+                day[1] += v[1];
+            });
+            uv.merge(other.uv);
+            pv += other.pv;
+        }
+    }
+
+    /** 并行扫描的线程内累加器 */
+    private final class Acc {
+        final Set<String> groupFilter;
+        final Map<String, GroupAcc> groups = new HashMap<>();
+
+        Acc(Set<String> groupFilter) {
+            this.groupFilter = groupFilter;
+        }
+
+        GroupAcc group(String name) {
+            return groups.computeIfAbsent(name, k -> new GroupAcc());
+        }
+
+        void scan(LocalDate date) {
+            VisitArchiveFile.Day day;
+            try {
+                day = VisitArchiveFile.read(fileOf(date), false, true);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            int n = day.groups().length;
+            long[] pv = new long[n];
+            // 当日 UV 与日汇总同口径用草图估计；IP 列在映射区内逐行求哈希，不解码为字符串
+            HyperLogLog[] dayUv = new HyperLogLog[n];
+            boolean[] wanted = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                wanted[i] = groupFilter == null || groupFilter.contains(day.groups()[i]);
+            }
+            VisitArchiveFile.IpCursor ips = day.ipCursor();
+            for (int i = 0; i < day.rows(); i++) {
+                int g = day.groupIds()[i];
+                if (!wanted[g]) {
+                    ips.skip();
+                    continue;
+                }
+                pv[g] += day.weight(i);
+                if (dayUv[g] == null) dayUv[g] = new HyperLogLog();
+                dayUv[g].addHash(ips.nextHash());
+            }
+            String d = date.toString();
+            for (int g = 0; g < n; g++) {
+                if (pv[g] == 0) continue;
+                GroupAcc acc = group(day.groups()[g]);
+                long[] slot = acc.days.computeIfAbsent(d, k -> new long[2]);
+                slot[0] += pv[g];
+                slot[1] += dayUv[g].estimate();
+                acc.pv += pv[g];
+                acc.uv.merge(dayUv[g]);
+            }
+        }
+
+        Acc merge(Acc other) {
+            other.groups.forEach((name, g) -> group(name).merge(g));
+            return this;
+        }
+    }
+}
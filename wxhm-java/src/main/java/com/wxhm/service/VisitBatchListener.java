@@ -0,0 +1,12 @@
+package com.wxhm.service;
+
+import java.util.List;
+
+/**
+ * 访问日志写线程的批次回调：在批量 INSERT 的同一事务内、同一线程上调用，
+ * 适合维护只由写线程修改的派生数据（草图、汇总等）。
+ */
+public interface VisitBatchListener {
+
+    void onBatch(List<VisitEvent> batch);
+}
@@ -0,0 +1,54 @@
+package com.wxhm.service;
+
+import com.wxhm.util.IpCodec;
+
+import java.time.LocalDateTime;
+
+/**
+ * 一次群码页访问或问卷点击（入队后由写线程批量落库）；weight 为该记录代表的次数，过载采样时大于 1。
+ * ip 在创建时规范化，与落库二进制解码后的文本一致（内存计数、UV 草图与按原始记录重建的结果相同）。
+ */
+public record VisitEvent(Kind kind, String groupName, String date, String ip, String platform,
+                         LocalDateTime createdAt, int weight) {
+
+    public enum Kind {
+        /** 群码页访问，写入 visit_log */
+        VISIT,
+        /** 问卷按钮点击，写入 survey_click_log */
+        SURVEY_CLICK,
+        /** 判重窗口内的重复访问：不写 visit_log，只计入日汇总的 repeat_pv */
+        REPEAT_VISIT
+    }
+
+    public static VisitEvent visit(String groupName, String ip, String platform, LocalDateTime createdAt) {
+        return new VisitEvent(Kind.VISIT, groupName, createdAt.toLocalDate().toString(), IpCodec.normalize(ip),
+                platform, createdAt, 1);
+    }
+
+    public static VisitEvent surveyClick(String groupName, String ip, String platform, LocalDateTime createdAt) {
+        return new VisitEvent(Kind.SURVEY_CLICK, groupName, createdAt.toLocalDate().toString(), IpCodec.normalize(ip),
+                platform, createdAt, 1);
+    }
+
+    /** 1/N 采样保留的记录以权重 N 落库，PV 合计保持无偏 */
+    public VisitEvent withWeight(int weight) {
+        return new VisitEvent(kind, groupName, date, ip, platform, createdAt, weight);
+    }
+
+    public long epochDay() {
+        return createdAt.toLocalDate().toEpochDay();
+    }
+
+    /** 判重命中后改记为重复访问 */
+    public VisitEvent asRepeat() {
+        return new VisitEvent(Kind.REPEAT_VISIT, groupName, date, ip, platform, createdAt, weight);
+    }
+
+    public boolean isVisit() {
+        return kind == Kind.VISIT;
+    }
+
+    public boolean isRepeat() {
+        return kind == Kind.REPEAT_VISIT;
+    }
+}
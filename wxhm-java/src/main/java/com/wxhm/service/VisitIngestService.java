@@ -0,0 +1,381 @@
+package com.wxhm.service;
+
+import com.wxhm.config.WxHmProperties;
+import com.wxhm.util.IpCodec;
+import com.wxhm.util.PlatformUtils;
+import com.wxhm.util.RotatingBloomFilter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 访问日志 / 问卷点击异步写入：请求线程只做无锁入队，单个写线程每 N 毫秒或攒满 M 条时，
+ * 在一个事务内用多行 INSERT 批量落库；应用关闭时把队列中剩余记录全部刷盘。
+ * <p>
+ * 写线程跟不上（SQLite 忙、磁盘慢）时按 {@link WxHmProperties.OverloadPolicy} 处理：队列有界，
+ * 请求线程最多等待 block-timeout-ms；sample 策略由写线程按队列水位调整采样间隔 N，保留的记录带权重 N。
+ */
+@Service
+public class VisitIngestService {
+
+    /** 单条多行 INSERT 的行数上限（6 列 × 100 行，低于 SQLite 旧版本 999 个参数的限制） */
+    private static final int ROWS_PER_STATEMENT = 100;
+    private static final String VISIT_INSERT_PREFIX =
+            "INSERT INTO visit_log (group_id, day, ip, platform, weight, created_at) VALUES ";
+    private static final String CLICK_INSERT_PREFIX =
+            "INSERT INTO survey_click_log (group_id, day, ip, platform, weight) VALUES ";
+    /** 阻塞等待空位时的单次停顿 */
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DailyCounterService dailyCounterService;
+    private final GroupDictionaryService groupDictionaryService;
+    private final List<VisitBatchListener> batchListeners;
+    private final int capacity;
+    private final int batchSize;
+    /** 队列达到该深度时立即唤醒写线程（批大小与容量中的较小者，队列写满也会触发刷盘） */
+    private final int wakeThreshold;
+    private final long flushIntervalNanos;
+    private final WxHmProperties.OverloadPolicy policy;
+    private final long blockTimeoutNanos;
+    private final int highWatermark;
+    private final int lowWatermark;
+    private final int maxSampleRate;
+    private final int dedupWindowMinutes;
+    /** 判重过滤器，未开启判重时为 null */
+    private final RotatingBloomFilter dedupFilter;
+
+    private final ConcurrentLinkedQueue<VisitEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder droppedOldest = new LongAdder();
+    private final LongAdder blockTimeouts = new LongAdder();
+    private final LongAdder blockedNanos = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder repeats = new LongAdder();
+    private final AtomicLong sampleRateChanges = new AtomicLong();
+    /** 当前采样间隔 N（1 表示不采样），仅写线程修改 */
+    private volatile int sampleRate = 1;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile long lastFlushAt;
+    private volatile long lastFlushMillis;
+    private volatile int lastBatchSize;
+
+    /** 刷盘互斥锁：批次写入与 {@link #runExclusive} 中的维护任务（如汇总重建）串行执行 */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public VisitIngestService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                              DailyCounterService dailyCounterService, GroupDictionaryService groupDictionaryService,
+                              List<VisitBatchListener> batchListeners, WxHmProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.dailyCounterService = dailyCounterService;
+        this.groupDictionaryService = groupDictionaryService;
+        this.batchListeners = batchListeners;
+        WxHmProperties.Ingest config = properties.getIngest();
+        this.capacity = Math.max(1, config.getCapacity());
+        this.batchSize = Math.max(1, config.getBatchSize());
+        this.wakeThreshold = Math.min(batchSize, capacity);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(10, config.getFlushIntervalMs()));
+        this.policy = config.getOverloadPolicy() != null ? config.getOverloadPolicy() : WxHmProperties.OverloadPolicy.SAMPLE;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getBlockTimeoutMs()));
+        this.highWatermark = Math.max(1, (int) (capacity * config.getSampleHighWatermark()));
+        this.lowWatermark = Math.min(highWatermark - 1, (int) (capacity * config.getSampleLowWatermark()));
+        this.maxSampleRate = Math.max(1, config.getMaxSampleRate());
+        this.dedupWindowMinutes = Math.max(0, config.getDedupWindowMinutes());
+        this.dedupFilter = dedupWindowMinutes > 0
+                ? new RotatingBloomFilter(TimeUnit.MINUTES.toMillis(dedupWindowMinutes), config.getDedupSlices(),
+                config.getDedupExpectedPerSlice(), config.getDedupFpp())
+                : null;
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        writer = new Thread(this::runWriter, "visit-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * 入队一条记录；访问与问卷点击的当日计数先行累加（不受判重、采样与丢弃影响）。
+     * 开启判重时，窗口内已出现过的 (群, 日期, IP, 平台) 改为重复访问事件，只累加日汇总不写 visit_log。
+     * 被采样略过的记录返回 true（已计入保留记录的权重），按策略最终丢弃时返回 false。
+     */
+    public boolean submit(VisitEvent event) {
+        if (event.isVisit()) {
+            dailyCounterService.record(event.groupName(), event.ip(), event.createdAt().toLocalDate());
+            if (dedupFilter != null && !dedupFilter.addIfAbsent(dedupKey(event), System.currentTimeMillis())) {
+                repeats.increment();
+                event = event.asRepeat();
+            }
+        } else {
+            dailyCounterService.recordSurveyClick(event.groupName(), event.createdAt().toLocalDate());
+        }
+        if (policy == WxHmProperties.OverloadPolicy.SAMPLE) {
+            int n = sampleRate;
+            if (n > 1) {
+                if (ThreadLocalRandom.current().nextInt(n) != 0) {
+                    sampledOut.increment();
+                    return true;
+                }
+                event = event.withWeight(n);
+            }
+        }
+        int d = tryReserve();
+        if (d < 0) {
+            switch (policy) {
+                case BLOCK -> d = reserveBlocking();
+                case DROP_OLDEST -> {
+                    // 取出最早的一条腾出位置（占用的槽位直接复用，深度不变）
+                    if (queue.poll() != null) {
+                        droppedOldest.increment();
+                        queue.offer(event);
+                        enqueued.increment();
+                        return true;
+                    }
+                    d = tryReserve();
+                }
+                default -> {
+                }
+            }
+            if (d < 0) {
+                dropped.increment();
+                return false;
+            }
+        }
+        queue.offer(event);
+        enqueued.increment();
+        if (d + 1 > maxDepth.get()) {
+            maxDepth.accumulateAndGet(d + 1, Math::max);
+        }
+        if (d + 1 == wakeThreshold) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    private static String dedupKey(VisitEvent e) {
+        return e.groupName() + '\u0000' + e.date() + '\u0000' + e.ip() + '\u0000' + e.platform();
+    }
+
+    /** 占用一个队列槽位，返回占用前的深度；队列已满返回 -1 */
+    private int tryReserve() {
+        int d;
+        do {
+            d = depth.get();
+            if (d >= capacity) {
+                return -1;
+            }
+        } while (!depth.compareAndSet(d, d + 1));
+        return d;
+    }
+
+    private int reserveBlocking() {
+        long start = System.nanoTime();
+        LockSupport.unpark(writer);
+        int d;
+        while ((d = tryReserve()) < 0) {
+            if (System.nanoTime() - start >= blockTimeoutNanos) {
+                blockTimeouts.increment();
+                break;
+            }
+            LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+        }
+        blockedNanos.add(System.nanoTime() - start);
+        return d;
+    }
+
+    /** 写线程每次刷盘前按队列水位调整采样间隔：高于高水位翻倍，低于低水位减半 */
+    private void adjustSampleRate() {
+        if (policy != WxHmProperties.OverloadPolicy.SAMPLE) {
+            return;
+        }
+        int d = depth.get();
+        int n = sampleRate;
+        if (d >= highWatermark && n < maxSampleRate) {
+            sampleRate = Math.min(maxSampleRate, n * 2);
+            sampleRateChanges.incrementAndGet();
+        } else if (d <= lowWatermark && n > 1) {
+            sampleRate = n / 2;
+            sampleRateChanges.incrementAndGet();
+        }
+    }
+
+    /**
+     * 暂停批次写入，在写线程之外独占执行维护任务（批次回调维护的内存状态此时不会被并发修改）。
+     */
+    public <T> T runExclusive(Supplier<T> task) {
+        flushLock.lock();
+        try {
+            return task.get();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("queueDepth", depth.get());
+        m.put("maxQueueDepth", maxDepth.get());
+        m.put("capacity", capacity);
+        m.put("batchSize", batchSize);
+        m.put("flushIntervalMs", TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos));
+        m.put("enqueued", enqueued.sum());
+        m.put("overloadPolicy", policy.name().toLowerCase().replace('_', '-'));
+        m.put("activeMode", activeMode());
+        m.put("sampleRate", sampleRate);
+        m.put("sampleRateChanges", sampleRateChanges.get());
+        m.put("sampledOut", sampledOut.sum());
+        m.put("dedupWindowMinutes", dedupWindowMinutes);
+        m.put("repeats", repeats.sum());
+        if (dedupFilter != null) {
+            m.put("dedupFilterBytes", dedupFilter.getSliceBytes() * dedupFilter.getSlices());
+            m.put("dedupHashes", dedupFilter.getHashes());
+        }
+        m.put("dropped", dropped.sum() + droppedOldest.sum());
+        m.put("droppedNewest", dropped.sum());
+        m.put("droppedOldest", droppedOldest.sum());
+        m.put("blockTimeouts", blockTimeouts.sum());
+        m.put("blockedMillis", TimeUnit.NANOSECONDS.toMillis(blockedNanos.sum()));
+        m.put("written", written.get());
+        m.put("failed", failed.get());
+        m.put("batches", batches.get());
+        m.put("lastBatchSize", lastBatchSize);
+        m.put("lastFlushMillis", lastFlushMillis);
+        m.put("lastFlushAt", lastFlushAt);
+        return m;
+    }
+
+    /** 当前生效的处理方式：normal / sampling 1/N / saturated（队列已满，正在按策略丢弃或阻塞） */
+    private String activeMode() {
+        if (depth.get() >= capacity) {
+            return "saturated";
+        }
+        int n = sampleRate;
+        return n > 1 ? "sampling 1/" + n : "normal";
+    }
+
+    private void runWriter() {
+        while (running) {
+            long deadline = System.nanoTime() + flushIntervalNanos;
+            while (running && depth.get() < wakeThreshold) {
+                long remain = deadline - System.nanoTime();
+                if (remain <= 0) break;
+                LockSupport.parkNanos(this, remain);
+            }
+            adjustSampleRate();
+            flushOnce();
+        }
+        // 关闭时排空队列
+        while (flushOnce() > 0) {
+            // continue
+        }
+    }
+
+    private int flushOnce() {
+        List<VisitEvent> batch = new ArrayList<>(Math.min(batchSize, Math.max(depth.get(), 1)));
+        VisitEvent e;
+        while (batch.size() < batchSize && (e = queue.poll()) != null) {
+            batch.add(e);
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        depth.addAndGet(-batch.size());
+        long start = System.nanoTime();
+        flushLock.lock();
+        try {
+            // 新群名先在事务外登记到字典，批次回滚不影响字典
+            for (VisitEvent v : batch) {
+                groupDictionaryService.idOf(v.groupName());
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                insertBatch(batch);
+                for (VisitBatchListener listener : batchListeners) {
+                    listener.onBatch(batch);
+                }
+            });
+            written.addAndGet(batch.size());
+        } catch (Exception ex) {
+            failed.addAndGet(batch.size());
+            System.err.println("访问日志批量写入失败(" + batch.size() + " 条): " + ex.getMessage());
+        } finally {
+            flushLock.unlock();
+        }
+        batches.incrementAndGet();
+        lastBatchSize = batch.size();
+        lastFlushMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        lastFlushAt = System.currentTimeMillis();
+        return batch.size();
+    }
+
+    private void insertBatch(List<VisitEvent> batch) {
+        List<VisitEvent> visits = new ArrayList<>(batch.size());
+        List<VisitEvent> clicks = new ArrayList<>();
+        for (VisitEvent e : batch) {
+            if (e.isVisit()) {
+                visits.add(e);
+            } else if (!e.isRepeat()) {
+                clicks.add(e);
+            }
+        }
+        insertRows(VISIT_INSERT_PREFIX, 6, visits);
+        insertRows(CLICK_INSERT_PREFIX, 5, clicks);
+    }
+
+    private void insertRows(String prefix, int columns, List<VisitEvent> rows) {
+        String placeholders = columns == 6 ? "(?,?,?,?,?,?)" : "(?,?,?,?,?)";
+        for (int from = 0; from < rows.size(); from += ROWS_PER_STATEMENT) {
+            List<VisitEvent> chunk = rows.subList(from, Math.min(from + ROWS_PER_STATEMENT, rows.size()));
+            StringBuilder sql = new StringBuilder(prefix.length() + chunk.size() * 12).append(prefix);
+            Object[] args = new Object[chunk.size() * columns];
+            int i = 0;
+            for (VisitEvent v : chunk) {
+                if (i > 0) sql.append(',');
+                sql.append(placeholders);
+                args[i++] = groupDictionaryService.idOf(v.groupName());
+                args[i++] = v.epochDay();
+                args[i++] = IpCodec.encode(v.ip());
+                args[i++] = PlatformUtils.code(v.platform());
+                args[i++] = v.weight();
+                if (columns == 6) {
+                    args[i++] = Timestamp.valueOf(v.createdAt());
+                }
+            }
+            jdbcTemplate.update(sql.toString(), args);
+        }
+    }
+}
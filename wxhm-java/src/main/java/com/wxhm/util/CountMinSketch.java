@@ -0,0 +1,55 @@
+package com.wxhm.util;
+
+/**
+ * Count-Min Sketch 频次估计：固定 depth × width 个计数器，估计值只会偏大不会偏小，
+ * 内存与不同键的数量无关。非线程安全，调用方负责同步。
+ */
+public final class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final long[][] counters;
+
+    public CountMinSketch(int depth, int width) {
+        this.depth = depth;
+        this.width = Integer.highestOneBit(Math.max(16, width));
+        this.counters = new long[depth][this.width];
+    }
+
+    /** 累加并返回累加后的估计值 */
+    public long add(String key, long count) {
+        long hash = HyperLogLog.hash64(key);
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            int idx = index(hash, i);
+            counters[i][idx] += count;
+            min = Math.min(min, counters[i][idx]);
+        }
+        return min;
+    }
+
+    public long estimate(String key) {
+        long hash = HyperLogLog.hash64(key);
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            min = Math.min(min, counters[i][index(hash, i)]);
+        }
+        return min;
+    }
+
+    /** 所有计数减半，用于按时间衰减 */
+    public void halve() {
+        for (long[] row : counters) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] >>>= 1;
+            }
+        }
+    }
+
+    /** 双重哈希：h1 + i·h2 */
+    private int index(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return (h1 + i * h2) & (width - 1);
+    }
+}
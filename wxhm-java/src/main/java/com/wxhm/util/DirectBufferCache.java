@@ -0,0 +1,162 @@
+package com.wxhm.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 堆外字节缓存：内容存放在 direct ByteBuffer 中，不占用 Java 堆；按总字节数预算用 CLOCK（二次机会）淘汰。
+ * 命中只读哈希表并置访问位，无锁；写入与淘汰在锁内进行：指针扫过的条目若访问位已置则清零放回队尾，否则淘汰。
+ * 每个键带版本号（如文件修改时间），版本不一致视为未命中，新内容写入时替换旧条目。
+ * 被淘汰的 direct buffer 在不再被引用后由 GC 回收堆外内存；总预算应小于 -XX:MaxDirectMemorySize。
+ */
+public final class DirectBufferCache {
+
+    private static final class Entry {
+        final String key;
+        final long version;
+        final ByteBuffer buffer;
+        volatile boolean referenced;
+
+        Entry(String key, long version, ByteBuffer buffer) {
+            this.key = key;
+            this.version = version;
+            this.buffer = buffer;
+        }
+    }
+
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    /** CLOCK 环，队首为指针位置；仅在 lock 内访问 */
+    private final ArrayDeque<Entry> clock = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    /** 当前占用字节数，仅在 lock 内修改 */
+    private volatile long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes      总字节预算，<=0 表示关闭（get 恒未命中，put 不缓存）
+     * @param maxEntryBytes 单条上限，超过的内容不缓存
+     */
+    public DirectBufferCache(long maxBytes, int maxEntryBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+        this.maxEntryBytes = (int) Math.min(Math.max(0, maxEntryBytes), this.maxBytes);
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /** size 字节的内容是否可以缓存 */
+    public boolean accepts(long size) {
+        return size <= maxEntryBytes;
+    }
+
+    /**
+     * 查找内容，命中时返回只读视图（position=0、limit=内容长度），各调用方互不影响；版本不一致或不存在返回 null
+     */
+    public ByteBuffer get(String key, long version) {
+        Entry e = entries.get(key);
+        if (e == null || e.version != version) {
+            misses.increment();
+            return null;
+        }
+        e.referenced = true;
+        hits.increment();
+        return e.buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * 写入内容（position 到 limit 之间的字节）并返回可供本次读取的只读视图；超过单条上限时不缓存并返回 null。
+     * direct buffer 直接接管（调用方此后不应再修改），堆内 buffer 复制到新分配的 direct buffer
+     */
+    public ByteBuffer put(String key, long version, ByteBuffer content) {
+        int size = content.remaining();
+        if (!isEnabled() || size > maxEntryBytes) {
+            return null;
+        }
+        ByteBuffer buffer;
+        if (content.isDirect()) {
+            buffer = content.slice();
+        } else {
+            buffer = ByteBuffer.allocateDirect(size);
+            buffer.put(content.duplicate()).flip();
+        }
+        Entry entry = new Entry(key, version, buffer);
+        lock.lock();
+        try {
+            Entry old = entries.put(key, entry);
+            if (old != null) {
+                clock.remove(old);
+                bytes -= old.buffer.capacity();
+            }
+            clock.addLast(entry);
+            bytes += size;
+            while (bytes > maxBytes) {
+                evictOne();
+            }
+        } finally {
+            lock.unlock();
+        }
+        loads.increment();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /** 在 lock 内调用：转动指针直到淘汰一个未被访问的条目 */
+    private void evictOne() {
+        while (true) {
+            Entry e = clock.pollFirst();
+            if (e == null) {
+                return;
+            }
+            if (e.referenced) {
+                e.referenced = false;
+                clock.addLast(e);
+                continue;
+            }
+            entries.remove(e.key, e);
+            bytes -= e.buffer.capacity();
+            evictions.increment();
+            return;
+        }
+    }
+
+    public int getEntries() {
+        return entries.size();
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public int getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+}
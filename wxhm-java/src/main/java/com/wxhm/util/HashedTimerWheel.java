@@ -0,0 +1,156 @@
+package com.wxhm.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 哈希时间轮：wheelSize 个槽、每槽 tickMillis，任务按到期 tick 取模放入槽中并记录剩余圈数，
+ * 工作线程每个 tick 只处理一个槽。添加、取消均为 O(1)（取消只打标记，轮到该槽时移除），
+ * 触发精度为一个 tick。到期任务在槽锁外、工作线程上依次执行（执行期间可再 schedule / cancel），应当短小；
+ * 异常只记录不影响后续任务。
+ */
+public final class HashedTimerWheel {
+
+    /** 已调度的任务句柄 */
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final long tickMillis;
+    private final int mask;
+    private final LinkedList<Timeout>[] wheel;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private final long startTime;
+    private volatile boolean running = true;
+    /** 以下字段只由工作线程访问 */
+    private long tick;
+
+    /**
+     * @param name       工作线程名
+     * @param tickMillis 每格时长（毫秒）
+     * @param wheelSize  槽数，向上取整为 2 的幂
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public HashedTimerWheel(String name, long tickMillis, int wheelSize) {
+        this.tickMillis = Math.max(1, tickMillis);
+        int size = Integer.highestOneBit(Math.max(2, Math.min(1 << 16, wheelSize)) - 1) << 1;
+        this.mask = size - 1;
+        this.wheel = new LinkedList[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new LinkedList<>();
+        }
+        this.startTime = System.currentTimeMillis();
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /** 在 deadlineMillis（epoch 毫秒）执行任务；已过期的任务在下一个 tick 执行 */
+    public Timeout schedule(Runnable task, long deadlineMillis) {
+        Timeout timeout = new Timeout(task, deadlineMillis);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /** 尚未触发且未取消的任务数（包括待放入槽的任务） */
+    public int size() {
+        int n = 0;
+        for (Timeout t : pending) {
+            if (!t.cancelled) n++;
+        }
+        for (LinkedList<Timeout> bucket : wheel) {
+            synchronized (bucket) {
+                for (Timeout t : bucket) {
+                    if (!t.cancelled) n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            long next = startTime + (tick + 1) * tickMillis;
+            long sleep = next - System.currentTimeMillis();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    if (!running) return;
+                }
+            }
+            transferPending();
+            expire(wheel[(int) (tick & mask)], System.currentTimeMillis());
+            tick++;
+        }
+    }
+
+    private void transferPending() {
+        Timeout t;
+        while ((t = pending.poll()) != null) {
+            if (t.cancelled) continue;
+            long ticks = Math.max(Math.floorDiv(t.deadline - startTime + tickMillis - 1, tickMillis), tick);
+            t.remainingRounds = (ticks - tick) / wheel.length;
+            LinkedList<Timeout> bucket = wheel[(int) (ticks & mask)];
+            synchronized (bucket) {
+                bucket.add(t);
+            }
+        }
+    }
+
+    private void expire(LinkedList<Timeout> bucket, long now) {
+        List<Timeout> due = new ArrayList<>();
+        synchronized (bucket) {
+            Iterator<Timeout> it = bucket.iterator();
+            while (it.hasNext()) {
+                Timeout t = it.next();
+                if (t.cancelled) {
+                    it.remove();
+                } else if (t.remainingRounds > 0) {
+                    t.remainingRounds--;
+                } else if (t.deadline <= now) {
+                    it.remove();
+                    due.add(t);
+                }
+            }
+        }
+        for (Timeout t : due) {
+            if (t.cancelled) continue;
+            try {
+                t.task.run();
+            } catch (Exception e) {
+                System.err.println("定时任务执行失败: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.wxhm.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog 基数估计（p=12，4096 个寄存器，标准误差约 1.6%）。
+ * 同精度的草图可直接合并，用于多日、多群去重 UV；序列化时基数小用稀疏格式，否则按 6 bit 紧凑打包。
+ * 非线程安全：写入需由单线程完成，寄存器只增不减，并发读取最多读到略旧的估计值。
+ */
+public final class HyperLogLog {
+
+    public static final int PRECISION = 12;
+    private static final int M = 1 << PRECISION;
+    private static final double ALPHA_MM = 0.7213 / (1 + 1.079 / M) * M * M;
+
+    private static final byte FORMAT_SPARSE = 1;
+    private static final byte FORMAT_DENSE = 2;
+    private static final int DENSE_BYTES = M * 6 / 8;
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this.registers = new byte[M];
+    }
+
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+
+    public void add(String value) {
+        if (value != null) {
+            addHash(hash64(value));
+        }
+    }
+
+    public void addHash(long hash) {
+        int idx = (int) (hash >>> (64 - PRECISION));
+        long rest = hash << PRECISION;
+        int rank = rest == 0 ? 64 - PRECISION + 1 : Long.numberOfLeadingZeros(rest) + 1;
+        if (rank > registers[idx]) {
+            registers[idx] = (byte) rank;
+        }
+    }
+
+    /** 合并另一个草图（取寄存器最大值），结果为两者并集的基数草图 */
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other != null) {
+            for (int i = 0; i < M; i++) {
+                if (other.registers[i] > registers[i]) {
+                    registers[i] = other.registers[i];
+                }
+            }
+        }
+        return this;
+    }
+
+    public HyperLogLog copy() {
+        return new HyperLogLog(registers.clone());
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += Double.longBitsToDouble((1023L - r) << 52);
+            if (r == 0) zeros++;
+        }
+        double e = ALPHA_MM / sum;
+        if (e <= 2.5 * M && zeros > 0) {
+            e = M * Math.log((double) M / zeros);
+        }
+        return Math.round(e);
+    }
+
+    public boolean isEmpty() {
+        for (byte r : registers) {
+            if (r != 0) return false;
+        }
+        return true;
+    }
+
+    public byte[] toBytes() {
+        int nonZero = 0;
+        for (byte r : registers) {
+            if (r != 0) nonZero++;
+        }
+        if (nonZero * 3 < DENSE_BYTES) {
+            byte[] out = new byte[1 + nonZero * 3];
+            out[0] = FORMAT_SPARSE;
+            int pos = 1;
+            for (int i = 0; i < M; i++) {
+                if (registers[i] != 0) {
+                    out[pos++] = (byte) (i >>> 8);
+                    out[pos++] = (byte) i;
+                    out[pos++] = registers[i];
+                }
+            }
+            return out;
+        }
+        byte[] out = new byte[1 + DENSE_BYTES];
+        out[0] = FORMAT_DENSE;
+        // 每 4 个寄存器（4×6 bit）打包为 3 字节
+        for (int i = 0, pos = 1; i < M; i += 4, pos += 3) {
+            int packed = (registers[i] << 18) | (registers[i + 1] << 12) | (registers[i + 2] << 6) | registers[i + 3];
+            out[pos] = (byte) (packed >>> 16);
+            out[pos + 1] = (byte) (packed >>> 8);
+            out[pos + 2] = (byte) packed;
+        }
+        return out;
+    }
+
+    public static HyperLogLog fromBytes(byte[] data) {
+        HyperLogLog hll = new HyperLogLog();
+        if (data == null || data.length == 0) {
+            return hll;
+        }
+        byte[] regs = hll.registers;
+        if (data[0] == FORMAT_SPARSE) {
+            for (int pos = 1; pos + 2 < data.length; pos += 3) {
+                int idx = ((data[pos] & 0xFF) << 8) | (data[pos + 1] & 0xFF);
+                if (idx < M) regs[idx] = data[pos + 2];
+            }
+        } else if (data[0] == FORMAT_DENSE && data.length == 1 + DENSE_BYTES) {
+            for (int i = 0, pos = 1; i < M; i += 4, pos += 3) {
+                int packed = ((data[pos] & 0xFF) << 16) | ((data[pos + 1] & 0xFF) << 8) | (data[pos + 2] & 0xFF);
+                regs[i] = (byte) ((packed >>> 18) & 0x3F);
+                regs[i + 1] = (byte) ((packed >>> 12) & 0x3F);
+                regs[i + 2] = (byte) ((packed >>> 6) & 0x3F);
+                regs[i + 3] = (byte) (packed & 0x3F);
+            }
+        } else {
+            throw new IllegalArgumentException("无法识别的 HyperLogLog 数据格式");
+        }
+        return hll;
+    }
+
+    /** 64 位字符串哈希（FNV-1a + murmur3 fmix64 打散） */
+    public static long hash64(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return hash64(bytes, 0, bytes.length);
+    }
+
+    /** 对 UTF-8 字节区间求哈希，与对应字符串的 {@link #hash64(String)} 结果相同，可复用缓冲区避免建字符串 */
+    public static long hash64(byte[] utf8, int off, int len) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = off, end = off + len; i < end; i++) {
+            h ^= utf8[i] & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof HyperLogLog other && Arrays.equals(registers, other.registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(registers);
+    }
+}
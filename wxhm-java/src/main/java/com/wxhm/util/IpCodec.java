@@ -0,0 +1,117 @@
+package com.wxhm.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * IP 文本与二进制互转：IPv4 为 4 字节、IPv6 为 16 字节；只解析字面量，不会触发 DNS 查询。
+ * {@link #encode} / {@link #decode} 用于落库：非 IP 文本（如 unknown）以 0 字节开头保存，长度避开 4 与 16。
+ */
+public final class IpCodec {
+
+    private IpCodec() {
+    }
+
+    /** 解析 IP 字面量，非合法 IPv4/IPv6 时返回 null */
+    public static byte[] toBytes(String ip) {
+        if (ip == null || ip.isEmpty()) {
+            return null;
+        }
+        if (ip.indexOf(':') >= 0) {
+            return parseV6(ip);
+        }
+        return parseV4(ip);
+    }
+
+    /** 落库编码：合法 IP 为 4/16 字节，其余文本为 0x00 + UTF-8（总长恰为 4 或 16 时前缀用两个 0x00） */
+    public static byte[] encode(String ip) {
+        if (ip == null) {
+            return null;
+        }
+        byte[] bytes = toBytes(ip);
+        if (bytes != null) {
+            return bytes;
+        }
+        byte[] text = ip.getBytes(StandardCharsets.UTF_8);
+        int prefix = text.length + 1 == 4 || text.length + 1 == 16 ? 2 : 1;
+        byte[] out = new byte[prefix + text.length];
+        System.arraycopy(text, 0, out, prefix, text.length);
+        return out;
+    }
+
+    public static String decode(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (data.length == 4 || data.length == 16) {
+            return toText(data);
+        }
+        int start = 0;
+        while (start < data.length && data[start] == 0) {
+            start++;
+        }
+        return new String(data, start, data.length - start, StandardCharsets.UTF_8);
+    }
+
+    /** 规范化 IP 文本（与落库后解码的结果一致），非 IP 文本原样返回 */
+    public static String normalize(String ip) {
+        byte[] bytes = toBytes(ip);
+        return bytes != null ? toText(bytes) : ip;
+    }
+
+    public static String toText(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes.length == 4) {
+            return (bytes[0] & 0xFF) + "." + (bytes[1] & 0xFF) + "." + (bytes[2] & 0xFF) + "." + (bytes[3] & 0xFF);
+        }
+        try {
+            return InetAddress.getByAddress(bytes).getHostAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private static byte[] parseV4(String ip) {
+        byte[] out = new byte[4];
+        int part = 0;
+        int value = -1;
+        for (int i = 0; i <= ip.length(); i++) {
+            char c = i < ip.length() ? ip.charAt(i) : '.';
+            if (c == '.') {
+                if (value < 0 || part >= 4) return null;
+                out[part++] = (byte) value;
+                value = -1;
+            } else if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) return null;
+            } else {
+                return null;
+            }
+        }
+        return part == 4 ? out : null;
+    }
+
+    private static byte[] parseV6(String ip) {
+        // 去掉 zone id（fe80::1%eth0），含 ':' 的字面量由 JDK 按 IPv6 解析，不做域名解析
+        int zone = ip.indexOf('%');
+        String literal = zone >= 0 ? ip.substring(0, zone) : ip;
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            boolean ok = c == ':' || c == '.' || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+            if (!ok) return null;
+        }
+        try {
+            byte[] bytes = InetAddress.getByName(literal).getAddress();
+            if (bytes.length == 4) {
+                // ::ffff:a.b.c.d 形式会被 JDK 折叠为 IPv4
+                return bytes;
+            }
+            return bytes.length == 16 ? bytes : null;
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
@@ -5,9 +5,27 @@ package com.wxhm.util;
  */
 public final class PlatformUtils {
 
+    /** 平台编码表：下标即落库的平台代码，未知平台按 0（Other）存储 */
+    private static final String[] PLATFORMS = {"Other", "Windows", "Mac", "Linux", "Android", "iOS"};
+
     private PlatformUtils() {
     }
 
+    public static int code(String platform) {
+        if (platform != null) {
+            for (int i = 1; i < PLATFORMS.length; i++) {
+                if (PLATFORMS[i].equals(platform)) {
+                    return i;
+                }
+            }
+        }
+        return 0;
+    }
+
+    public static String nameOf(int code) {
+        return code > 0 && code < PLATFORMS.length ? PLATFORMS[code] : PLATFORMS[0];
+    }
+
     public static String parsePlatform(String userAgent) {
         if (userAgent == null) {
             return "Other";
@@ -0,0 +1,111 @@
+package com.wxhm.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按时间分片轮转的 Bloom 过滤器：窗口切成 slices 片，每片一个位图，键写入当前片、在全部未过期片中查找，
+ * 最旧的片到期后整体清空复用。判重窗口约为 window × (slices - 1) / slices 至 window。
+ * 只会误判"已出现"（概率约 fpp），不会漏判；位图用 AtomicLongArray，读写无锁，仅换片时加锁。
+ */
+public final class RotatingBloomFilter {
+
+    private final int slices;
+    private final long sliceMillis;
+    private final int bitMask;
+    private final int hashes;
+    private final AtomicLongArray[] bits;
+    private final AtomicLongArray sliceIds;
+
+    /**
+     * @param windowMillis     判重窗口
+     * @param slices           分片数
+     * @param expectedPerSlice 单片预计写入的不同键数量
+     * @param fpp              单片期望误判率
+     */
+    public RotatingBloomFilter(long windowMillis, int slices, int expectedPerSlice, double fpp) {
+        this.slices = Math.max(2, slices);
+        this.sliceMillis = Math.max(1, windowMillis / this.slices);
+        long n = Math.max(1, expectedPerSlice);
+        double p = Math.min(0.5, Math.max(1e-9, fpp));
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        int size = Integer.highestOneBit((int) Math.min(1L << 30, Math.max(64, m)) - 1) << 1;
+        this.bitMask = size - 1;
+        this.hashes = Math.max(1, Math.min(16, (int) Math.round((double) m / n * Math.log(2))));
+        this.bits = new AtomicLongArray[this.slices];
+        this.sliceIds = new AtomicLongArray(this.slices);
+        for (int i = 0; i < this.slices; i++) {
+            bits[i] = new AtomicLongArray(size >>> 6);
+            sliceIds.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * 窗口内未出现过时写入并返回 true；已出现（或误判）返回 false
+     */
+    public boolean addIfAbsent(String key, long nowMillis) {
+        long slice = Math.floorDiv(nowMillis, sliceMillis);
+        int current = (int) Math.floorMod(slice, (long) slices);
+        if (sliceIds.get(current) != slice) {
+            rotate(current, slice);
+        }
+        long hash = HyperLogLog.hash64(key);
+        for (int i = 0; i < slices; i++) {
+            long id = sliceIds.get(i);
+            if (id > slice - slices && id <= slice && contains(bits[i], hash)) {
+                return false;
+            }
+        }
+        AtomicLongArray target = bits[current];
+        for (int i = 0; i < hashes; i++) {
+            int bit = index(hash, i);
+            int word = bit >>> 6;
+            long mask = 1L << bit;
+            long v;
+            do {
+                v = target.get(word);
+            } while ((v & mask) == 0 && !target.compareAndSet(word, v, v | mask));
+        }
+        return true;
+    }
+
+    public int getSlices() {
+        return slices;
+    }
+
+    /** 单片位图字节数 */
+    public long getSliceBytes() {
+        return (long) (bitMask + 1) >>> 3;
+    }
+
+    public int getHashes() {
+        return hashes;
+    }
+
+    private synchronized void rotate(int index, long slice) {
+        if (sliceIds.get(index) >= slice) {
+            return;
+        }
+        AtomicLongArray target = bits[index];
+        for (int i = 0; i < target.length(); i++) {
+            target.set(i, 0L);
+        }
+        sliceIds.set(index, slice);
+    }
+
+    private boolean contains(AtomicLongArray array, long hash) {
+        for (int i = 0; i < hashes; i++) {
+            int bit = index(hash, i);
+            if ((array.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** 双重哈希：h1 + i·h2 */
+    private int index(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return (h1 + i * h2) & bitMask;
+    }
+}
@@ -0,0 +1,197 @@
+package com.wxhm.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving 热点 Top-K：最多跟踪 capacity 个键，新键挤掉当前计数最小的键并继承其计数（记为误差），
+ * 频次超过 N/capacity 的键一定在列表中。
+ * 条目按计数挂在升序的桶链表上（Stream-Summary），最小计数即链表头，offer 为 O(1)。非线程安全，调用方负责同步。
+ */
+public final class SpaceSaving<T> {
+
+    public static final class Entry<T> {
+        private final String key;
+        private long count;
+        private long error;
+        private T payload;
+        /** 所在桶及桶内前后条目 */
+        private Bucket<T> bucket;
+        private Entry<T> prev;
+        private Entry<T> next;
+
+        private Entry(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /** 计数上界 */
+        public long getCount() {
+            return count;
+        }
+
+        /** 保证计数（计数下界） */
+        public long getGuaranteed() {
+            return count - error;
+        }
+
+        public T getPayload() {
+            return payload;
+        }
+
+        public void setPayload(T payload) {
+            this.payload = payload;
+        }
+    }
+
+    /** 同一计数的条目；prev / next 为计数更小 / 更大的相邻桶 */
+    private static final class Bucket<T> {
+        final long count;
+        Bucket<T> prev;
+        Bucket<T> next;
+        Entry<T> head;
+
+        Bucket(long count) {
+            this.count = count;
+        }
+    }
+
+    private final int capacity;
+    private final Map<String, Entry<T>> entries;
+    /** 计数最小的桶 */
+    private Bucket<T> min;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.entries = new HashMap<>(this.capacity * 2);
+    }
+
+    /**
+     * 计一次并返回该键的条目；键被新建或替换了旧键时 payload 为 null，由调用方重新初始化。
+     */
+    public Entry<T> offer(String key) {
+        Entry<T> e = entries.get(key);
+        if (e != null) {
+            increment(e);
+            return e;
+        }
+        e = new Entry<>(key);
+        if (entries.size() >= capacity) {
+            // 新键顶替计数最小的键，留在原桶后再加一
+            Entry<T> victim = min.head;
+            Bucket<T> bucket = victim.bucket;
+            entries.remove(victim.key);
+            e.count = victim.count;
+            e.error = victim.count;
+            linkEntry(bucket, e);
+            unlinkEntry(victim);
+            entries.put(key, e);
+            increment(e);
+            return e;
+        }
+        if (min == null || min.count != 1) {
+            Bucket<T> b = new Bucket<>(1);
+            b.next = min;
+            if (min != null) min.prev = b;
+            min = b;
+        }
+        e.count = 1;
+        linkEntry(min, e);
+        entries.put(key, e);
+        return e;
+    }
+
+    public Entry<T> get(String key) {
+        return entries.get(key);
+    }
+
+    /** 所有计数与误差减半，计数归零的键移出；减半不改变计数顺序，按原顺序重建桶链表 */
+    public void halve() {
+        List<Entry<T>> ordered = new ArrayList<>(entries.size());
+        for (Bucket<T> b = min; b != null; b = b.next) {
+            for (Entry<T> e = b.head; e != null; e = e.next) {
+                ordered.add(e);
+            }
+        }
+        min = null;
+        Bucket<T> last = null;
+        for (Entry<T> e : ordered) {
+            e.count >>>= 1;
+            e.error >>>= 1;
+            if (e.count == 0) {
+                entries.remove(e.key);
+                continue;
+            }
+            if (last == null || last.count != e.count) {
+                Bucket<T> b = new Bucket<>(e.count);
+                b.prev = last;
+                if (last != null) {
+                    last.next = b;
+                } else {
+                    min = b;
+                }
+                last = b;
+            }
+            linkEntry(last, e);
+        }
+    }
+
+    /** 按计数降序 */
+    public List<Entry<T>> top() {
+        List<Entry<T>> list = new ArrayList<>(entries.values());
+        list.sort(Comparator.comparingLong((Entry<T> e) -> e.count).reversed().thenComparing(e -> e.key));
+        return list;
+    }
+
+    /** 计数加一：移到下一个桶，计数不连续时在当前桶之后新建 */
+    private void increment(Entry<T> e) {
+        Bucket<T> b = e.bucket;
+        long count = e.count + 1;
+        Bucket<T> target = b.next;
+        if (target == null || target.count != count) {
+            target = new Bucket<>(count);
+            target.prev = b;
+            target.next = b.next;
+            if (b.next != null) b.next.prev = target;
+            b.next = target;
+        }
+        unlinkEntry(e);
+        linkEntry(target, e);
+        e.count = count;
+    }
+
+    private static <T> void linkEntry(Bucket<T> b, Entry<T> e) {
+        e.bucket = b;
+        e.prev = null;
+        e.next = b.head;
+        if (b.head != null) b.head.prev = e;
+        b.head = e;
+    }
+
+    /** 从桶中摘下条目，桶空时从链表中移除 */
+    private void unlinkEntry(Entry<T> e) {
+        Bucket<T> b = e.bucket;
+        if (e.prev != null) {
+            e.prev.next = e.next;
+        } else {
+            b.head = e.next;
+        }
+        if (e.next != null) e.next.prev = e.prev;
+        e.prev = null;
+        e.next = null;
+        if (b.head == null) {
+            if (b.prev != null) {
+                b.prev.next = b.next;
+            } else {
+                min = b.next;
+            }
+            if (b.next != null) b.next.prev = b.prev;
+        }
+    }
+}
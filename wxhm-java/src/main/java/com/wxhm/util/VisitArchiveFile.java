@@ -0,0 +1,353 @@
+package com.wxhm.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单日访问记录列式归档文件（.wxa）。
+ * <pre>
+ * "WXA2" | epochDay:long | rows:int
+ * 群名字典 | 平台字典                      （count:int，每项 len:short + UTF-8）
+ * 群名列   len:int + rows × 群名字典下标    （字典 ≤ 256 项为 1 字节，否则 2 字节）
+ * 平台列   len:int + rows × 1 字节
+ * 时间列   len:int + 首条毫秒:long + 其余相邻差值 varint（记录按时间升序）
+ * IP 列    len:int + rows × (4 | 16 + 对应字节；0 + len:byte + 原始文本)
+ * 权重列   len:int + rows × varint（过载采样时一行代表的访问次数，WXA1 无此列、均为 1）
+ * </pre>
+ * 每列带长度前缀，读取时可跳过不需要的列；读取使用只读内存映射。
+ */
+public final class VisitArchiveFile {
+
+    private static final byte[] MAGIC = "WXA2".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MAGIC_V1 = "WXA1".getBytes(StandardCharsets.US_ASCII);
+
+    private VisitArchiveFile() {
+    }
+
+    /** 解码后的单日列数据；未读取的列为 null。IP 列不解码，保留映射区只读视图，经 {@link #ipCursor()} 逐行读取 */
+    public record Day(long epochDay, int rows, String[] groups, String[] platforms,
+                      int[] groupIds, byte[] platformIds, long[] timestamps, ByteBuffer ipColumn, int[] weights) {
+
+        public int weight(int row) {
+            return weights != null ? weights[row] : 1;
+        }
+
+        /** 从第一行开始顺序读取 IP 列；未读取 IP 列时返回 null */
+        public IpCursor ipCursor() {
+            return ipColumn != null ? new IpCursor(ipColumn) : null;
+        }
+    }
+
+    /**
+     * IP 列游标：每次调用 next / nextHash / skip 前进一行。
+     * nextHash 在复用缓冲区中拼出 IP 文本的 UTF-8 字节后求哈希，结果与 HyperLogLog.hash64(IpCodec.toText(ip)) 相同，
+     * 逐行不建字符串，可与按 IP 文本计数的日汇总草图直接合并。非线程安全
+     */
+    public static final class IpCursor {
+        private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+        private final ByteBuffer buf;
+        private final byte[] raw = new byte[16];
+        /** IP 文本（IPv6 最长 39 字节，原始文本最长 255 字节） */
+        private final byte[] text = new byte[255];
+
+        private IpCursor(ByteBuffer column) {
+            this.buf = column.duplicate();
+        }
+
+        public long nextHash() {
+            return HyperLogLog.hash64(text, 0, nextText());
+        }
+
+        /** 解码为字符串，仅用于展示与排查 */
+        public String next() {
+            return new String(text, 0, nextText(), StandardCharsets.UTF_8);
+        }
+
+        public void skip() {
+            int tag = buf.get() & 0xFF;
+            int len = tag == 4 || tag == 16 ? tag : buf.get() & 0xFF;
+            buf.position(buf.position() + len);
+        }
+
+        private int nextText() {
+            int tag = buf.get() & 0xFF;
+            if (tag == 4) {
+                buf.get(raw, 0, 4);
+                return formatV4(0);
+            }
+            if (tag == 16) {
+                buf.get(raw, 0, 16);
+                return formatV6();
+            }
+            int len = buf.get() & 0xFF;
+            buf.get(text, 0, len);
+            return len;
+        }
+
+        /** 点分十进制，同 IpCodec.toText */
+        private int formatV4(int from) {
+            int pos = 0;
+            for (int i = from; i < from + 4; i++) {
+                if (i > from) text[pos++] = '.';
+                int v = raw[i] & 0xFF;
+                if (v >= 100) text[pos++] = (byte) ('0' + v / 100);
+                if (v >= 10) text[pos++] = (byte) ('0' + v / 10 % 10);
+                text[pos++] = (byte) ('0' + v % 10);
+            }
+            return pos;
+        }
+
+        /** 同 InetAddress.getHostAddress：8 组小写十六进制、不省略零组；IPv4 映射地址按 IPv4 输出 */
+        private int formatV6() {
+            boolean mapped = raw[10] == (byte) 0xFF && raw[11] == (byte) 0xFF;
+            for (int i = 0; i < 10 && mapped; i++) {
+                mapped = raw[i] == 0;
+            }
+            if (mapped) {
+                return formatV4(12);
+            }
+            int pos = 0;
+            for (int g = 0; g < 8; g++) {
+                if (g > 0) text[pos++] = ':';
+                int v = ((raw[g * 2] & 0xFF) << 8) | (raw[g * 2 + 1] & 0xFF);
+                boolean started = false;
+                for (int shift = 12; shift >= 0; shift -= 4) {
+                    int nibble = (v >>> shift) & 0xF;
+                    if (nibble != 0 || started || shift == 0) {
+                        text[pos++] = HEX[nibble];
+                        started = true;
+                    }
+                }
+            }
+            return pos;
+        }
+    }
+
+    /**
+     * 逐行写入：每行直接编码进各列缓冲区（每行十余字节），不保留行对象，可配合 RowCallbackHandler 边查边写；
+     * finish 时写出文件。行需按 createdAtMillis 升序
+     */
+    public static final class Writer {
+        private final Path target;
+        private final long epochDay;
+        private final Map<String, Integer> groupDict = new HashMap<>();
+        private final Map<String, Integer> platformDict = new HashMap<>();
+        private final List<String> groups = new ArrayList<>();
+        private final List<String> platforms = new ArrayList<>();
+        /** 群名字典下标，字典大小在写完前未知，先按 2 字节保存 */
+        private char[] groupIds = new char[1024];
+        private final ByteArrayOutputStream platformCol = new ByteArrayOutputStream(1024);
+        private final ByteArrayOutputStream timeCol = new ByteArrayOutputStream(1024);
+        private final ByteArrayOutputStream ipCol = new ByteArrayOutputStream(4096);
+        private final ByteArrayOutputStream weightCol = new ByteArrayOutputStream(1024);
+        private int rows;
+        private long firstMillis;
+        private long prevMillis;
+
+        public Writer(Path target, long epochDay) {
+            this.target = target;
+            this.epochDay = epochDay;
+        }
+
+        /**
+         * @param ip 落库编码的 IP（见 {@link IpCodec#encode}），4 / 16 字节直接写入
+         */
+        public void add(String groupName, String platform, long createdAtMillis, byte[] ip, int weight) {
+            if (rows == groupIds.length) {
+                groupIds = Arrays.copyOf(groupIds, rows * 2);
+            }
+            groupIds[rows] = (char) (int) groupDict.computeIfAbsent(nullToEmpty(groupName), k -> {
+                groups.add(k);
+                return groups.size() - 1;
+            });
+            platformCol.write(platformDict.computeIfAbsent(nullToEmpty(platform), k -> {
+                platforms.add(k);
+                return platforms.size() - 1;
+            }));
+
+            if (rows == 0) {
+                firstMillis = createdAtMillis;
+                prevMillis = createdAtMillis;
+            } else {
+                writeVarLong(timeCol, Math.max(0, createdAtMillis - prevMillis));
+                prevMillis = Math.max(prevMillis, createdAtMillis);
+            }
+
+            if (ip != null && (ip.length == 4 || ip.length == 16)) {
+                ipCol.write(ip.length);
+                ipCol.write(ip, 0, ip.length);
+            } else {
+                byte[] text = nullToEmpty(IpCodec.decode(ip)).getBytes(StandardCharsets.UTF_8);
+                int len = Math.min(text.length, 255);
+                ipCol.write(0);
+                ipCol.write(len);
+                ipCol.write(text, 0, len);
+            }
+
+            writeVarLong(weightCol, Math.max(1, weight));
+            rows++;
+        }
+
+        public int rows() {
+            return rows;
+        }
+
+        /** 写出文件并返回文件字节数 */
+        public long finish() throws IOException {
+            if (groups.size() > 0x10000 || platforms.size() > 0x100) {
+                throw new IOException("归档字典过大: groups=" + groups.size() + ", platforms=" + platforms.size());
+            }
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            Files.createDirectories(target.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                out.write(MAGIC);
+                out.writeLong(epochDay);
+                out.writeInt(rows);
+                writeDict(out, groups);
+                writeDict(out, platforms);
+
+                boolean wide = groups.size() > 256;
+                out.writeInt(wide ? rows * 2 : rows);
+                for (int i = 0; i < rows; i++) {
+                    if (wide) out.write(groupIds[i] >>> 8);
+                    out.write(groupIds[i]);
+                }
+                writeColumn(out, platformCol);
+
+                out.writeInt(8 + timeCol.size());
+                out.writeLong(firstMillis);
+                timeCol.writeTo(out);
+
+                writeColumn(out, ipCol);
+                writeColumn(out, weightCol);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return Files.size(target);
+        }
+    }
+
+    /**
+     * 以内存映射方式读取归档文件。
+     *
+     * @param withTimestamps 是否解码时间列
+     * @param withIps        是否保留 IP 列（不逐行解码，见 {@link Day#ipCursor()}）
+     */
+    public static Day read(Path file, boolean withTimestamps, boolean withIps) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            byte[] magic = new byte[MAGIC.length];
+            buf.get(magic);
+            boolean v1 = Arrays.equals(magic, MAGIC_V1);
+            if (!v1 && !Arrays.equals(magic, MAGIC)) {
+                throw new IOException("不是有效的归档文件: " + file.getFileName());
+            }
+            long epochDay = buf.getLong();
+            int rows = buf.getInt();
+            String[] groups = readDict(buf);
+            String[] platforms = readDict(buf);
+
+            int len = buf.getInt();
+            int[] groupIds = new int[rows];
+            boolean wide = groups.length > 256;
+            for (int i = 0; i < rows; i++) {
+                groupIds[i] = wide ? buf.getShort() & 0xFFFF : buf.get() & 0xFF;
+            }
+
+            len = buf.getInt();
+            byte[] platformIds = new byte[rows];
+            buf.get(platformIds);
+
+            len = buf.getInt();
+            long[] timestamps = null;
+            if (withTimestamps) {
+                timestamps = new long[rows];
+                long t = buf.getLong();
+                for (int i = 0; i < rows; i++) {
+                    if (i > 0) t += readVarLong(buf);
+                    timestamps[i] = t;
+                }
+            } else {
+                buf.position(buf.position() + len);
+            }
+
+            len = buf.getInt();
+            ByteBuffer ipColumn = withIps ? buf.slice(buf.position(), len).asReadOnlyBuffer() : null;
+            buf.position(buf.position() + len);
+
+            int[] weights = null;
+            if (!v1) {
+                buf.getInt();
+                weights = new int[rows];
+                for (int i = 0; i < rows; i++) {
+                    weights[i] = (int) readVarLong(buf);
+                }
+            }
+            return new Day(epochDay, rows, groups, platforms, groupIds, platformIds, timestamps, ipColumn, weights);
+        }
+    }
+
+    private static void writeDict(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String v : values) {
+            byte[] b = v.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(b.length);
+            out.write(b);
+        }
+    }
+
+    private static String[] readDict(ByteBuffer buf) {
+        String[] values = new String[buf.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            byte[] b = new byte[buf.getShort() & 0xFFFF];
+            buf.get(b);
+            values[i] = new String(b, StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+    private static void writeColumn(DataOutputStream out, ByteArrayOutputStream col) throws IOException {
+        out.writeInt(col.size());
+        col.writeTo(out);
+        col.reset();
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readVarLong(ByteBuffer buf) {
+        long v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.get();
+            v |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return v;
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+}
@@ -0,0 +1,146 @@
+package com.wxhm.service;
+
+import com.wxhm.config.WxHmProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileServeServiceTest {
+
+    private static final int SIZE = 1000;
+    private static final Instant MODIFIED = Instant.parse("2026-01-02T03:04:05Z");
+
+    @TempDir
+    Path dir;
+
+    private final FileServeService service = new FileServeService(new WxHmProperties());
+    private Path file;
+    private byte[] content;
+
+    @BeforeEach
+    void createFile() throws IOException {
+        content = new byte[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            content[i] = (byte) i;
+        }
+        file = dir.resolve("qr.png");
+        Files.write(file, content);
+        Files.setLastModifiedTime(file, FileTime.from(MODIFIED));
+    }
+
+    @Test
+    void shouldServeOpenEndedRangeToEndOfFile() throws IOException {
+        MockHttpServletResponse resp = serve("bytes=0-", null);
+
+        assertEquals(206, resp.getStatus());
+        assertEquals("bytes 0-999/1000", resp.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(content, resp.getContentAsByteArray());
+    }
+
+    @Test
+    void shouldServeSuffixRange() throws IOException {
+        MockHttpServletResponse resp = serve("bytes=-100", null);
+
+        assertEquals(206, resp.getStatus());
+        assertEquals("bytes 900-999/1000", resp.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(content, 900, SIZE), resp.getContentAsByteArray());
+    }
+
+    @Test
+    void shouldClampSuffixLongerThanFile() throws IOException {
+        MockHttpServletResponse resp = serve("bytes=-5000", null);
+
+        assertEquals(206, resp.getStatus());
+        assertEquals("bytes 0-999/1000", resp.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void shouldRejectEmptySuffixRange() throws IOException {
+        MockHttpServletResponse resp = serve("bytes=-0", null);
+
+        assertEquals(416, resp.getStatus());
+        assertEquals("bytes */1000", resp.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, resp.getContentAsByteArray().length);
+    }
+
+    @Test
+    void shouldRejectStartBeyondEndOfFile() throws IOException {
+        assertEquals(416, serve("bytes=1000-", null).getStatus());
+        assertEquals(416, serve("bytes=999999-1000000", null).getStatus());
+    }
+
+    @Test
+    void shouldServeWholeFileWhenEndBeforeStart() throws IOException {
+        MockHttpServletResponse resp = serve("bytes=500-100", null);
+
+        assertEquals(200, resp.getStatus());
+        assertNull(resp.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(content, resp.getContentAsByteArray());
+    }
+
+    @Test
+    void shouldServeWholeFileForMultipleRanges() throws IOException {
+        MockHttpServletResponse resp = serve("bytes=0-9,20-29", null);
+
+        assertEquals(200, resp.getStatus());
+        assertEquals(SIZE, resp.getContentAsByteArray().length);
+    }
+
+    @Test
+    void shouldHonourMatchingIfRange() throws IOException {
+        String etag = service.stat(file).etag();
+        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(MODIFIED.atZone(ZoneOffset.UTC));
+
+        assertEquals(206, serve("bytes=0-9", etag).getStatus());
+        assertEquals(206, serve("bytes=0-9", date).getStatus());
+    }
+
+    @Test
+    void shouldServeWholeFileForWeakOrMismatchedIfRange() throws IOException {
+        String etag = service.stat(file).etag();
+        String otherDate = DateTimeFormatter.RFC_1123_DATE_TIME.format(MODIFIED.plusSeconds(60).atZone(ZoneOffset.UTC));
+
+        for (String ifRange : new String[]{"W/" + etag, "\"other\"", otherDate, "not a date"}) {
+            MockHttpServletResponse resp = serve("bytes=0-9", ifRange);
+            assertEquals(200, resp.getStatus(), ifRange);
+            assertEquals(SIZE, resp.getContentAsByteArray().length, ifRange);
+        }
+    }
+
+    @Test
+    void shouldReturnFalseForMissingFile() throws IOException {
+        MockHttpServletRequest req = new MockHttpServletRequest("GET", "/missing.png");
+        assertFalse(service.serve(dir.resolve("missing.png"), MediaType.IMAGE_PNG, null, null, null,
+                req, new MockHttpServletResponse()));
+    }
+
+    private MockHttpServletResponse serve(String range, String ifRange) throws IOException {
+        MockHttpServletRequest req = new MockHttpServletRequest("GET", "/qr.png");
+        req.addHeader(HttpHeaders.RANGE, range);
+        if (ifRange != null) {
+            req.addHeader(HttpHeaders.IF_RANGE, ifRange);
+        }
+        MockHttpServletResponse resp = new MockHttpServletResponse();
+        assertTrue(service.serve(file, MediaType.IMAGE_PNG, null, null, null, req, resp));
+        return resp;
+    }
+}
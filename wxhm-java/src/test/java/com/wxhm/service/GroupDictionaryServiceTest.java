@@ -0,0 +1,115 @@
+package com.wxhm.service;
+
+import com.wxhm.util.IpCodec;
+import com.wxhm.util.PlatformUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GroupDictionaryServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void createLegacyDatabase() {
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite:" + dir.resolve("stats.db"), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        jdbcTemplate.execute("CREATE TABLE group_dict (id integer primary key autoincrement, name varchar(255))");
+        jdbcTemplate.execute("INSERT INTO group_dict (name) VALUES ('existing')");
+        jdbcTemplate.execute("CREATE TABLE visit_log (id integer primary key, group_name varchar(255), date varchar(10), "
+                + "ip varchar(64), platform varchar(20), created_at timestamp, weight integer)");
+        jdbcTemplate.execute("CREATE TABLE survey_click_log (id integer primary key, group_name varchar(255), "
+                + "date varchar(10), ip varchar(64), platform varchar(20), weight integer)");
+        jdbcTemplate.update("INSERT INTO visit_log VALUES (1, 'g1', '2026-10-01', '10.0.0.1', 'Android', 1790000000000, 1)");
+        jdbcTemplate.update("INSERT INTO visit_log VALUES (2, 'g2', '2026-10-02', '2001:db8::1', 'iOS', 1790086400000, NULL)");
+        jdbcTemplate.update("INSERT INTO visit_log VALUES (3, 'existing', 'bad-date', 'unknown', 'Plan9', 1790086400001, 3)");
+        jdbcTemplate.update("INSERT INTO survey_click_log VALUES (7, 'g2', '2026-10-02', '10.0.0.2', 'Windows', 2)");
+    }
+
+    @AfterEach
+    void close() {
+        dataSource.destroy();
+    }
+
+    @Test
+    void shouldMigrateLegacyTextColumnsToCompactTables() {
+        GroupDictionaryService service = new GroupDictionaryService(jdbcTemplate, transactionTemplate);
+        service.init();
+
+        assertEquals(1, service.find("existing"));
+        Integer g1 = service.find("g1");
+        Integer g2 = service.find("g2");
+        assertEquals("g1", service.nameOf(g1));
+        assertEquals("g2", service.nameOf(g2));
+
+        List<String> columns = jdbcTemplate.queryForList("SELECT name FROM pragma_table_info('visit_log')", String.class);
+        assertFalse(columns.contains("group_name"));
+        assertTrue(columns.containsAll(List.of("group_id", "day", "ip", "platform", "created_at", "weight")));
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT id, group_id, day, ip, platform, created_at, weight FROM visit_log ORDER BY id");
+        assertEquals(3, rows.size());
+        assertRow(rows.get(0), 1, g1, LocalDate.of(2026, 10, 1).toEpochDay(), "10.0.0.1", "Android", 1);
+        assertEquals(1790000000000L, ((Number) rows.get(0).get("created_at")).longValue());
+        assertRow(rows.get(1), 2, g2, LocalDate.of(2026, 10, 2).toEpochDay(), "2001:db8:0:0:0:0:0:1", "iOS", 1);
+        // 无法解析的日期记为空，未知平台记为 Other，非 IP 文本原样保留
+        assertNull(rows.get(2).get("day"));
+        assertEquals("unknown", IpCodec.decode((byte[]) rows.get(2).get("ip")));
+        assertEquals(0, ((Number) rows.get(2).get("platform")).intValue());
+        assertEquals(3, ((Number) rows.get(2).get("weight")).intValue());
+
+        Map<String, Object> click = jdbcTemplate.queryForMap("SELECT * FROM survey_click_log");
+        assertRow(click, 7, g2, LocalDate.of(2026, 10, 2).toEpochDay(), "10.0.0.2", "Windows", 2);
+
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name IN ('idx_visit_group_day', 'idx_survey_group_day')",
+                Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM sqlite_master WHERE name LIKE '%_compact'", Integer.class));
+    }
+
+    @Test
+    void shouldLeaveMigratedTablesAloneOnNextStart() {
+        new GroupDictionaryService(jdbcTemplate, transactionTemplate).init();
+        byte[] ip = jdbcTemplate.queryForObject("SELECT ip FROM visit_log WHERE id = 1", byte[].class);
+
+        GroupDictionaryService restarted = new GroupDictionaryService(jdbcTemplate, transactionTemplate);
+        restarted.init();
+
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM visit_log", Integer.class));
+        assertArrayEquals(ip, jdbcTemplate.queryForObject("SELECT ip FROM visit_log WHERE id = 1", byte[].class));
+        assertEquals("g1", restarted.nameOf(restarted.find("g1")));
+    }
+
+    private static void assertRow(Map<String, Object> row, long id, Integer groupId, long day, String ip,
+                                  String platform, int weight) {
+        assertEquals(id, ((Number) row.get("id")).longValue());
+        assertEquals(groupId, ((Number) row.get("group_id")).intValue());
+        assertEquals(day, ((Number) row.get("day")).longValue());
+        assertEquals(ip, IpCodec.decode((byte[]) row.get("ip")));
+        assertEquals(PlatformUtils.code(platform), ((Number) row.get("platform")).intValue());
+        assertEquals(weight, ((Number) row.get("weight")).intValue());
+    }
+}
@@ -0,0 +1,56 @@
+package com.wxhm.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountMinSketchTest {
+
+    @Test
+    void shouldNeverUnderestimateAndStayWithinErrorBound() {
+        CountMinSketch sketch = new CountMinSketch(4, 2048);
+        Map<String, Long> truth = new HashMap<>();
+        Random random = new Random(7);
+        int n = 100_000;
+        for (int i = 0; i < n; i++) {
+            String key = "g" + random.nextInt(5000);
+            sketch.add(key, 1);
+            truth.merge(key, 1L, Long::sum);
+        }
+        // 误差上界 e·N/width，每个键超出的概率不超过 e^-depth
+        double bound = Math.E * n / 2048;
+        int within = 0;
+        for (Map.Entry<String, Long> e : truth.entrySet()) {
+            long estimate = sketch.estimate(e.getKey());
+            assertTrue(estimate >= e.getValue(), e.getKey());
+            if (estimate - e.getValue() <= bound) within++;
+        }
+        assertTrue(within >= truth.size() * 0.95, "within=" + within + "/" + truth.size());
+    }
+
+    @Test
+    void shouldReturnEstimateFromAdd() {
+        CountMinSketch sketch = new CountMinSketch(4, 64);
+        assertEquals(3, sketch.add("a", 3));
+        assertEquals(5, sketch.add("a", 2));
+        assertEquals(5, sketch.estimate("a"));
+    }
+
+    @Test
+    void shouldHalveEstimates() {
+        CountMinSketch sketch = new CountMinSketch(4, 1024);
+        sketch.add("a", 9);
+        sketch.add("b", 4);
+
+        sketch.halve();
+
+        assertEquals(4, sketch.estimate("a"));
+        assertEquals(2, sketch.estimate("b"));
+        assertEquals(0, sketch.estimate("missing"));
+    }
+}
@@ -0,0 +1,115 @@
+package com.wxhm.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DirectBufferCacheTest {
+
+    @Test
+    void shouldEvictUnreferencedEntryBeforeReferencedOne() {
+        DirectBufferCache cache = new DirectBufferCache(300, 100);
+        cache.put("a", 1, bytes(100, 'a'));
+        cache.put("b", 1, bytes(100, 'b'));
+        cache.put("c", 1, bytes(100, 'c'));
+        // a 被访问过，获得第二次机会；b 未被访问，先被淘汰
+        assertNotNull(cache.get("a", 1));
+
+        cache.put("d", 1, bytes(100, 'd'));
+
+        assertNotNull(cache.get("a", 1));
+        assertNull(cache.get("b", 1));
+        assertNotNull(cache.get("c", 1));
+        assertNotNull(cache.get("d", 1));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(300, cache.getBytes());
+    }
+
+    @Test
+    void shouldMissOnVersionMismatchAndReplaceOnNewVersion() {
+        DirectBufferCache cache = new DirectBufferCache(1000, 500);
+        cache.put("qr", 1, bytes(100, 'x'));
+
+        assertNull(cache.get("qr", 2));
+        cache.put("qr", 2, bytes(40, 'y'));
+
+        assertNull(cache.get("qr", 1));
+        ByteBuffer hit = cache.get("qr", 2);
+        assertNotNull(hit);
+        assertEquals(40, hit.remaining());
+        assertEquals('y', hit.get(0));
+        assertEquals(1, cache.getEntries());
+        assertEquals(40, cache.getBytes());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void shouldTrackBytesAndRejectOversizedEntries() {
+        DirectBufferCache cache = new DirectBufferCache(1000, 200);
+
+        assertTrue(cache.accepts(200));
+        assertFalse(cache.accepts(201));
+        assertNull(cache.put("big", 1, bytes(201, 'z')));
+        assertEquals(0, cache.getBytes());
+
+        cache.put("a", 1, bytes(150, 'a'));
+        cache.put("b", 1, ByteBuffer.allocateDirect(120).put(new byte[120]).flip());
+        assertEquals(270, cache.getBytes());
+        assertEquals(2, cache.getLoads());
+    }
+
+    @Test
+    void shouldCacheOnlyRemainingBytesOfSlicedContent() {
+        DirectBufferCache cache = new DirectBufferCache(1000, 500);
+        ByteBuffer content = bytes(100, 'p');
+        content.position(10).limit(60);
+
+        cache.put("slice", 1, content);
+
+        assertEquals(50, cache.get("slice", 1).remaining());
+        assertEquals(50, cache.getBytes());
+    }
+
+    @Test
+    void shouldReturnIndependentReadOnlyViews() {
+        DirectBufferCache cache = new DirectBufferCache(1000, 500);
+        ByteBuffer stored = cache.put("qr", 1, bytes(100, 'r'));
+        assertTrue(stored.isReadOnly());
+
+        ByteBuffer first = cache.get("qr", 1);
+        ByteBuffer second = cache.get("qr", 1);
+
+        assertTrue(first.isReadOnly());
+        assertTrue(first.isDirect());
+        assertThrows(ReadOnlyBufferException.class, () -> first.put(0, (byte) 0));
+        first.position(90);
+        assertEquals(0, second.position());
+        assertEquals(100, second.remaining());
+    }
+
+    @Test
+    void shouldDoNothingWhenDisabled() {
+        DirectBufferCache cache = new DirectBufferCache(0, 100);
+
+        assertFalse(cache.isEnabled());
+        assertNull(cache.put("a", 1, bytes(10, 'a')));
+        assertNull(cache.get("a", 1));
+        assertEquals(0, cache.getEntries());
+    }
+
+    private static ByteBuffer bytes(int size, char fill) {
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) fill);
+        return ByteBuffer.wrap(data);
+    }
+}
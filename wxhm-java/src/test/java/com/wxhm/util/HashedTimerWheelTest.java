@@ -0,0 +1,75 @@
+package com.wxhm.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedTimerWheelTest {
+
+    private static final long TICK = 10;
+
+    /** 4 个槽、每格 10ms：一圈 40ms */
+    private final HashedTimerWheel wheel = new HashedTimerWheel("timer-wheel-test", TICK, 4);
+
+    @AfterEach
+    void stop() {
+        wheel.stop();
+    }
+
+    @Test
+    void shouldFireMultiRoundDeadlineNotBeforeItIsDue() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        AtomicLong firedAt = new AtomicLong();
+        long deadline = System.currentTimeMillis() + 150;
+        wheel.schedule(() -> {
+            firedAt.set(System.currentTimeMillis());
+            fired.countDown();
+        }, deadline);
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(firedAt.get() >= deadline, "fired " + (deadline - firedAt.get()) + "ms early");
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void shouldFirePastDeadlineOnNextTick() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.currentTimeMillis();
+        wheel.schedule(fired::countDown, start - TimeUnit.MINUTES.toMillis(5));
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() - start < 40 * TICK);
+    }
+
+    @Test
+    void shouldNotFireCancelledTimeout() throws InterruptedException {
+        AtomicBoolean cancelledRan = new AtomicBoolean();
+        CountDownLatch later = new CountDownLatch(1);
+        long now = System.currentTimeMillis();
+        HashedTimerWheel.Timeout timeout = wheel.schedule(() -> cancelledRan.set(true), now + 60);
+        wheel.schedule(later::countDown, now + 120);
+        timeout.cancel();
+
+        assertTrue(timeout.isCancelled());
+        assertTrue(later.await(2, TimeUnit.SECONDS));
+        assertFalse(cancelledRan.get());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void shouldAllowSchedulingFromInsideTask() throws InterruptedException {
+        CountDownLatch second = new CountDownLatch(1);
+        wheel.schedule(() -> wheel.schedule(second::countDown, System.currentTimeMillis()),
+                System.currentTimeMillis() + 20);
+
+        assertTrue(second.await(2, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,59 @@
+package com.wxhm.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+
+    @Test
+    void shouldEstimateCardinalityWithinErrorBound() {
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < 100_000; i++) {
+            hll.add("10.0." + (i >> 8) + "." + (i & 0xFF) + "#" + i);
+        }
+        long estimate = hll.estimate();
+        assertTrue(Math.abs(estimate - 100_000) < 100_000 * 0.05, "estimate=" + estimate);
+    }
+
+    @Test
+    void shouldCountSmallSetsExactlyEnough() {
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < 3; i++) {
+            hll.add("127.0.0.1");
+            hll.add("192.168.1.2");
+        }
+        assertEquals(2, hll.estimate());
+    }
+
+    @Test
+    void shouldMergeAsUnion() {
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        for (int i = 0; i < 20_000; i++) {
+            a.add("ip-" + i);
+            b.add("ip-" + (i + 10_000));
+        }
+        long union = a.copy().merge(b).estimate();
+        assertTrue(Math.abs(union - 30_000) < 30_000 * 0.05, "union=" + union);
+    }
+
+    @Test
+    void shouldRoundTripSparseAndDenseEncodings() {
+        HyperLogLog small = new HyperLogLog();
+        small.add("1.1.1.1");
+        small.add("8.8.8.8");
+        byte[] sparse = small.toBytes();
+        assertTrue(sparse.length < 16);
+        assertEquals(small, HyperLogLog.fromBytes(sparse));
+
+        HyperLogLog large = new HyperLogLog();
+        for (int i = 0; i < 50_000; i++) {
+            large.add("u" + i);
+        }
+        byte[] dense = large.toBytes();
+        assertEquals(1 + 4096 * 6 / 8, dense.length);
+        assertEquals(large, HyperLogLog.fromBytes(dense));
+    }
+}
@@ -0,0 +1,60 @@
+package com.wxhm.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class IpCodecTest {
+
+    @Test
+    void shouldRoundTripIpv4AsFourBytes() {
+        byte[] encoded = IpCodec.encode("192.168.1.20");
+
+        assertEquals(4, encoded.length);
+        assertEquals("192.168.1.20", IpCodec.decode(encoded));
+    }
+
+    @Test
+    void shouldRoundTripIpv6AsSixteenBytes() {
+        byte[] encoded = IpCodec.encode("2001:db8::1");
+
+        assertEquals(16, encoded.length);
+        assertEquals(IpCodec.normalize("2001:db8::1"), IpCodec.decode(encoded));
+        assertEquals("2001:db8:0:0:0:0:0:1", IpCodec.decode(encoded));
+    }
+
+    @Test
+    void shouldDropZoneIdAndFoldMappedIpv4() {
+        assertEquals(16, IpCodec.toBytes("fe80::1%eth0").length);
+        assertEquals("10.0.0.1", IpCodec.decode(IpCodec.encode("::ffff:10.0.0.1")));
+    }
+
+    @Test
+    void shouldKeepInvalidTextWithoutLookingItUp() {
+        for (String text : new String[]{"unknown", "abc", "1.2.3", "256.1.1.1", "example.com", "", "x:y"}) {
+            byte[] encoded = IpCodec.encode(text);
+            assertNotEquals(4, encoded.length, text);
+            assertNotEquals(16, encoded.length, text);
+            assertEquals(text, IpCodec.decode(encoded), text);
+        }
+    }
+
+    @Test
+    void shouldAvoidIpLengthsForTextOfThreeOrFifteenBytes() {
+        // 0x00 前缀后总长恰为 4 / 16 时改用两字节前缀，避免被当作 IP 解码
+        for (String text : new String[]{"abc", "not-an-ip-addr!"}) {
+            byte[] encoded = IpCodec.encode(text);
+            assertEquals(text.length() + 2, encoded.length, text);
+            assertEquals(text, IpCodec.decode(encoded), text);
+        }
+    }
+
+    @Test
+    void shouldHandleNulls() {
+        assertNull(IpCodec.encode(null));
+        assertNull(IpCodec.decode(null));
+        assertNull(IpCodec.toBytes(null));
+    }
+}
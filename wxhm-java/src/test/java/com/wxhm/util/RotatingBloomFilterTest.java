@@ -0,0 +1,84 @@
+package com.wxhm.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RotatingBloomFilterTest {
+
+    /** 3 片、每片 1s：一个窗口 3s */
+    private static final long SLICE = 1000;
+
+    @Test
+    void shouldSuppressRepeatedKeyWithinWindow() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(3 * SLICE, 3, 1000, 0.01);
+
+        assertTrue(filter.addIfAbsent("k", 0));
+        assertFalse(filter.addIfAbsent("k", 500));
+        assertFalse(filter.addIfAbsent("k", 2 * SLICE + 999));
+    }
+
+    @Test
+    void shouldAcceptKeyAgainAfterSlicesPeriods() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(3 * SLICE, 3, 1000, 0.01);
+        assertTrue(filter.addIfAbsent("k", 999));
+
+        // 写入片在第 3 个片周期起被清空复用
+        assertTrue(filter.addIfAbsent("k", 3 * SLICE));
+        assertFalse(filter.addIfAbsent("k", 3 * SLICE + 1));
+    }
+
+    @Test
+    void shouldFindKeysWrittenToEarlierLiveSlices() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(3 * SLICE, 3, 1000, 0.01);
+        assertTrue(filter.addIfAbsent("a", 0));
+        assertTrue(filter.addIfAbsent("b", SLICE));
+
+        assertFalse(filter.addIfAbsent("a", 2 * SLICE));
+        assertFalse(filter.addIfAbsent("b", 2 * SLICE));
+        assertTrue(filter.addIfAbsent("a", 3 * SLICE));
+        assertFalse(filter.addIfAbsent("b", 3 * SLICE));
+    }
+
+    @Test
+    void shouldNotSuppressDistinctKeysBeyondFpp() {
+        int n = 1000;
+        RotatingBloomFilter filter = new RotatingBloomFilter(3 * SLICE, 3, n, 0.01);
+
+        int suppressed = 0;
+        for (int i = 0; i < n; i++) {
+            if (!filter.addIfAbsent("key-" + i, 0)) suppressed++;
+        }
+
+        // 逐个写入时误判率低于满载的 fpp，留 3 倍余量
+        assertTrue(suppressed <= 3 * n * 0.01, "suppressed " + suppressed);
+    }
+
+    @Test
+    void shouldSizeSliceFromExpectedKeysAndFpp() {
+        // m = ceil(-1000·ln 0.01 / ln²2) = 9586 位，向上取 2 的幂为 16384 位；k = round(m/n·ln2) = 7
+        RotatingBloomFilter filter = new RotatingBloomFilter(3 * SLICE, 3, 1000, 0.01);
+        assertEquals(16384 / 8, filter.getSliceBytes());
+        assertEquals(7, filter.getHashes());
+        assertEquals(3, filter.getSlices());
+    }
+
+    @Test
+    void shouldClampTinySliceToSixtyFourBits() {
+        // m = ceil(-ln 0.5 / ln²2) = 2 位，至少 64 位
+        RotatingBloomFilter filter = new RotatingBloomFilter(3 * SLICE, 3, 1, 0.5);
+        assertEquals(8, filter.getSliceBytes());
+        assertEquals(1, filter.getHashes());
+    }
+
+    @Test
+    void shouldClampArgumentsToSaneRange() {
+        // fpp 取下限 1e-9：m = 44 位，k = round(44·ln2) = 30 超上限取 16；分片至少 2 片
+        RotatingBloomFilter filter = new RotatingBloomFilter(3 * SLICE, 1, 0, 0);
+        assertEquals(2, filter.getSlices());
+        assertEquals(8, filter.getSliceBytes());
+        assertEquals(16, filter.getHashes());
+    }
+}
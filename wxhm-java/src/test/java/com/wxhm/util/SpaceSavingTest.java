@@ -0,0 +1,91 @@
+package com.wxhm.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTest {
+
+    @Test
+    void shouldBoundTrueCountBetweenGuaranteedAndCount() {
+        SpaceSaving<Void> ss = new SpaceSaving<>(50);
+        Map<String, Long> truth = new HashMap<>();
+        Random random = new Random(42);
+        int n = 200_000;
+        for (int i = 0; i < n; i++) {
+            // 少量热点键 + 大量长尾键
+            String key = random.nextInt(4) == 0 ? "hot-" + random.nextInt(10) : "tail-" + random.nextInt(20_000);
+            ss.offer(key);
+            truth.merge(key, 1L, Long::sum);
+        }
+        for (SpaceSaving.Entry<Void> e : ss.top()) {
+            long actual = truth.get(e.getKey());
+            assertTrue(e.getGuaranteed() <= actual, e.getKey() + " guaranteed=" + e.getGuaranteed() + " actual=" + actual);
+            assertTrue(actual <= e.getCount(), e.getKey() + " count=" + e.getCount() + " actual=" + actual);
+        }
+        // 频次超过 N/capacity 的键一定被跟踪
+        truth.forEach((key, count) -> {
+            if (count > n / 50) {
+                assertNotNull(ss.get(key), key + " count=" + count);
+            }
+        });
+    }
+
+    @Test
+    void shouldReplaceMinimumAndInheritItsCountAsError() {
+        SpaceSaving<String> ss = new SpaceSaving<>(2);
+        ss.offer("a");
+        ss.offer("a");
+        ss.offer("a");
+        ss.offer("b").setPayload("b");
+
+        SpaceSaving.Entry<String> c = ss.offer("c");
+
+        assertNull(ss.get("b"));
+        assertNull(c.getPayload());
+        assertEquals(2, c.getCount());
+        assertEquals(1, c.getGuaranteed());
+        assertEquals(3, ss.get("a").getCount());
+        assertEquals(3, ss.get("a").getGuaranteed());
+    }
+
+    @Test
+    void shouldHalveCountsAndDropZeroes() {
+        SpaceSaving<Void> ss = new SpaceSaving<>(10);
+        for (int i = 0; i < 5; i++) ss.offer("five");
+        for (int i = 0; i < 4; i++) ss.offer("four");
+        ss.offer("one");
+
+        ss.halve();
+
+        assertEquals(2, ss.get("five").getCount());
+        assertEquals(2, ss.get("four").getCount());
+        assertNull(ss.get("one"));
+        // 减半后桶链表仍可继续计数，顺序正确
+        ss.offer("four");
+        ss.offer("new");
+        List<SpaceSaving.Entry<Void>> top = ss.top();
+        assertEquals(List.of("four", "five", "new"), top.stream().map(SpaceSaving.Entry::getKey).toList());
+        assertEquals(List.of(3L, 2L, 1L), top.stream().map(SpaceSaving.Entry::getCount).toList());
+    }
+
+    @Test
+    void shouldTrackAtMostCapacityKeys() {
+        SpaceSaving<Void> ss = new SpaceSaving<>(8);
+        for (int i = 0; i < 1000; i++) {
+            ss.offer("k" + (i % 37));
+        }
+        List<SpaceSaving.Entry<Void>> top = ss.top();
+        assertEquals(8, top.size());
+        // 所有计数之和等于总次数（被挤掉键的计数由新键继承）
+        assertEquals(1000, top.stream().mapToLong(SpaceSaving.Entry::getCount).sum());
+    }
+}
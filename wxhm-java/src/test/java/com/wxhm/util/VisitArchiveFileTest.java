@@ -0,0 +1,176 @@
+package com.wxhm.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class VisitArchiveFileTest {
+
+    private static final long DAY = 20_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void shouldRoundTripAllColumns() throws IOException {
+        Path file = dir.resolve("day.wxa");
+        VisitArchiveFile.Writer writer = new VisitArchiveFile.Writer(file, DAY);
+        writer.add("g1", "ios", 1000, IpCodec.encode("1.2.3.4"), 1);
+        writer.add("g2", "android", 1500, IpCodec.encode("2001:db8::1"), 3);
+        // 乱序时间按前一条夹住，权重至少为 1
+        writer.add("g1", "ios", 1200, IpCodec.encode("unknown"), 0);
+        writer.add(null, null, 2000, null, 2);
+        assertEquals(4, writer.rows());
+        writer.finish();
+
+        VisitArchiveFile.Day day = VisitArchiveFile.read(file, true, true);
+
+        assertEquals(DAY, day.epochDay());
+        assertEquals(4, day.rows());
+        assertArrayEquals(new String[]{"g1", "g2", ""}, day.groups());
+        assertArrayEquals(new String[]{"ios", "android", ""}, day.platforms());
+        assertArrayEquals(new int[]{0, 1, 0, 2}, day.groupIds());
+        assertArrayEquals(new byte[]{0, 1, 0, 2}, day.platformIds());
+        assertArrayEquals(new long[]{1000, 1500, 1500, 2000}, day.timestamps());
+        assertArrayEquals(new int[]{1, 3, 1, 2}, day.weights());
+        VisitArchiveFile.IpCursor ips = day.ipCursor();
+        assertEquals("1.2.3.4", ips.next());
+        assertEquals("2001:db8:0:0:0:0:0:1", ips.next());
+        assertEquals("unknown", ips.next());
+        assertEquals("", ips.next());
+    }
+
+    @Test
+    void shouldSkipUnrequestedColumns() throws IOException {
+        Path file = dir.resolve("day.wxa");
+        VisitArchiveFile.Writer writer = new VisitArchiveFile.Writer(file, DAY);
+        writer.add("g1", "ios", 1000, IpCodec.encode("1.2.3.4"), 2);
+        writer.add("g2", "ios", 2000, IpCodec.encode("::1"), 5);
+        writer.finish();
+
+        VisitArchiveFile.Day day = VisitArchiveFile.read(file, false, false);
+
+        assertNull(day.timestamps());
+        assertNull(day.ipColumn());
+        assertNull(day.ipCursor());
+        assertArrayEquals(new int[]{0, 1}, day.groupIds());
+        assertEquals(2, day.weight(0));
+        assertEquals(5, day.weight(1));
+    }
+
+    @Test
+    void shouldHashIpsLikeDecodedText() throws IOException {
+        String[] ips = {"1.2.3.4", "0.0.0.0", "255.255.255.255", "10.0.100.9", "::", "::1",
+                "fe80::abcd:1", "2001:db8:ffff:0:1:20:300:4000", "unknown", ""};
+        Path file = dir.resolve("day.wxa");
+        VisitArchiveFile.Writer writer = new VisitArchiveFile.Writer(file, DAY);
+        for (String ip : ips) {
+            writer.add("g", "ios", 1000, IpCodec.encode(ip), 1);
+        }
+        // IPv4 映射地址若以 16 字节写入，按 IPv4 文本求哈希
+        byte[] mapped = new byte[16];
+        mapped[10] = (byte) 0xFF;
+        mapped[11] = (byte) 0xFF;
+        mapped[12] = (byte) 192;
+        mapped[15] = 7;
+        writer.add("g", "ios", 1000, mapped, 1);
+        writer.finish();
+
+        VisitArchiveFile.IpCursor cursor = VisitArchiveFile.read(file, false, true).ipCursor();
+        for (String ip : ips) {
+            String text = IpCodec.normalize(ip);
+            assertEquals(HyperLogLog.hash64(text), cursor.nextHash(), ip);
+        }
+        assertEquals(HyperLogLog.hash64("192.0.0.7"), cursor.nextHash());
+    }
+
+    @Test
+    void shouldSkipIpsWithoutDecoding() throws IOException {
+        Path file = dir.resolve("day.wxa");
+        VisitArchiveFile.Writer writer = new VisitArchiveFile.Writer(file, DAY);
+        writer.add("g", "ios", 1000, IpCodec.encode("2001:db8::1"), 1);
+        writer.add("g", "ios", 1000, IpCodec.encode("unknown"), 1);
+        writer.add("g", "ios", 1000, IpCodec.encode("1.2.3.4"), 1);
+        writer.add("g", "ios", 1000, IpCodec.encode("5.6.7.8"), 1);
+        writer.finish();
+
+        VisitArchiveFile.IpCursor cursor = VisitArchiveFile.read(file, false, true).ipCursor();
+        cursor.skip();
+        cursor.skip();
+        cursor.skip();
+        assertEquals("5.6.7.8", cursor.next());
+    }
+
+    @Test
+    void shouldUseTwoByteGroupIdsBeyond256Groups() throws IOException {
+        Path file = dir.resolve("day.wxa");
+        VisitArchiveFile.Writer writer = new VisitArchiveFile.Writer(file, DAY);
+        int groups = 300;
+        for (int i = 0; i < groups; i++) {
+            writer.add("g" + i, "ios", 1000 + i, IpCodec.encode("10.0." + (i / 256) + "." + (i % 256)), 1);
+        }
+        writer.add("g299", "ios", 5000, IpCodec.encode("10.9.9.9"), 1);
+        writer.finish();
+
+        VisitArchiveFile.Day day = VisitArchiveFile.read(file, true, true);
+
+        assertEquals(groups, day.groups().length);
+        assertEquals(groups + 1, day.rows());
+        VisitArchiveFile.IpCursor ips = day.ipCursor();
+        for (int i = 0; i < groups; i++) {
+            assertEquals("g" + i, day.groups()[day.groupIds()[i]]);
+            assertEquals(1000 + i, day.timestamps()[i]);
+            assertEquals("10.0." + (i / 256) + "." + (i % 256), ips.next());
+        }
+        assertEquals(299, day.groupIds()[groups]);
+        assertEquals("10.9.9.9", ips.next());
+    }
+
+    @Test
+    void shouldReadV1FileWithoutWeightColumn() throws IOException {
+        Path file = dir.resolve("v1.wxa");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.write("WXA1".getBytes(StandardCharsets.US_ASCII));
+            out.writeLong(DAY);
+            out.writeInt(2);
+            writeDict(out, "g");
+            writeDict(out, "ios");
+            out.writeInt(2);
+            out.write(new byte[]{0, 0});
+            out.writeInt(2);
+            out.write(new byte[]{0, 0});
+            out.writeInt(8 + 1);
+            out.writeLong(5000);
+            out.write(10);
+            out.writeInt(10);
+            out.write(new byte[]{4, 1, 2, 3, 4, 4, 5, 6, 7, 8});
+        }
+
+        VisitArchiveFile.Day day = VisitArchiveFile.read(file, true, true);
+
+        assertEquals(DAY, day.epochDay());
+        assertNull(day.weights());
+        assertEquals(1, day.weight(0));
+        assertEquals(1, day.weight(1));
+        assertArrayEquals(new long[]{5000, 5010}, day.timestamps());
+        VisitArchiveFile.IpCursor ips = day.ipCursor();
+        assertEquals("1.2.3.4", ips.next());
+        assertEquals("5.6.7.8", ips.next());
+    }
+
+    private static void writeDict(DataOutputStream out, String value) throws IOException {
+        byte[] b = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(1);
+        out.writeShort(b.length);
+        out.write(b);
+    }
+}